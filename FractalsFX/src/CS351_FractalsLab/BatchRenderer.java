@@ -0,0 +1,261 @@
+package CS351_FractalsLab;
+
+import javax.imageio.ImageIO;
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+
+/**
+ * Headless renderer writing a region of the set as a Deep Zoom (.dzi)
+ * pyramid of PNG tiles, for maps browsed offline with any Deep Zoom
+ * viewer. The full resolution image is rendered in bands one tile high
+ * by the same TileRenderer as the GUI, a deep view's reference orbit is
+ * computed once for the image centre and shared by every band. Each band is cut into tiles and
+ * averaged down 2x2 into the band of the level below, which is written
+ * when it fills, and so on down to 1x1. Only a band per level is ever
+ * held, so 32768 x 32768 needs about as much memory as four of its rows
+ * of tiles.
+ *
+ * Usage: java -cp out CS351_FractalsLab.BatchRenderer [options]
+ *   --re X, --im Y        centre, any number of digits (default 0, 0)
+ *   --span S              plane units across the width (default 4)
+ *   --iterations N        (default 170)
+ *   --width N, --height N output size in pixels (default 600 x 500)
+ *   --tile N              tile size (default 256)
+ *   --threads N           (default all cores)
+ *   --trace               Mariani-Silver border tracing
+ *   --palette N           0 the original green and purple, 1 blues (default 0)
+ *   --out NAME            writes NAME.dzi and NAME_files/ (default mandelbrot)
+ */
+class BatchRenderer
+{
+  private BigDecimal re = BigDecimal.ZERO;
+  private BigDecimal im = BigDecimal.ZERO;
+  private double span = 4;
+  private int iterations = 170;
+  private int width = 600;
+  private int height = 500;
+  private int tileSize = 256;
+  private int threads = Runtime.getRuntime().availableProcessors();
+  private boolean trace;
+  private Palette palette = Palette.ALL[0];
+  private String out = "mandelbrot";
+  private ForkJoinPool writers;
+
+  public static void main(String[] args) throws IOException
+  {
+    BatchRenderer batch = new BatchRenderer();
+    batch.parseArgs(args);
+    batch.run();
+  }
+
+  /**
+   * reads the command line options, see the class comment.
+   * @param args command line.
+   */
+  private void parseArgs(String[] args)
+  {
+    for (int i = 0; i < args.length; i++)
+    {
+      switch (args[i])
+      {
+        case "--re": re = new BigDecimal(args[++i]); break;
+        case "--im": im = new BigDecimal(args[++i]); break;
+        case "--span": span = Double.parseDouble(args[++i]); break;
+        case "--iterations": iterations = Integer.parseInt(args[++i]); break;
+        case "--width": width = Integer.parseInt(args[++i]); break;
+        case "--height": height = Integer.parseInt(args[++i]); break;
+        case "--tile": tileSize = Integer.parseInt(args[++i]); break;
+        case "--threads": threads = Integer.parseInt(args[++i]); break;
+        case "--trace": trace = true; break;
+        case "--palette": palette = Palette.ALL[Integer.parseInt(args[++i])]; break;
+        case "--out": out = args[++i]; break;
+        default: throw new IllegalArgumentException("unknown option " + args[i]);
+      }
+    }
+    if (width <= 0 || height <= 0) throw new IllegalArgumentException("the output needs a positive size");
+    if (tileSize <= 0 || tileSize % 2 != 0) throw new IllegalArgumentException("tiles must be even sized");
+  }
+
+  private void run() throws IOException
+  {
+    TileRenderer renderer = new TileRenderer(threads);
+    renderer.setBorderTracing(trace);
+    writers = new ForkJoinPool(threads);
+    int levels = 1;
+    while (1 << (levels - 1) < Math.max(width, height)) levels++;
+    Level top = null;
+    for (int level = 0; level < levels; level++)
+    {
+      int shift = levels - 1 - level;
+      top = new Level(level, ceilShift(width, shift), ceilShift(height, shift), top);
+    }
+    writeDescriptor();
+
+    long start = System.nanoTime();
+    Viewport view = new Viewport(re, im, span);
+    ReferenceOrbit orbit = null;          // of the image centre, computed by the first band of a deep view
+    for (int y = 0; y < height; y += tileSize)
+    {
+      int rows = Math.min(tileSize, height - y);
+      TileRenderer.Frame band = renderer.renderAndWait(view, width, rows, y, height, iterations, palette,
+              orbit);
+      orbit = band.orbit;
+      top.add(band.argb, rows);
+      System.out.printf("rows %d of %d, %.1f s%n", y + rows, height, (System.nanoTime() - start) / 1e9);
+    }
+    top.finish();
+    writers.shutdown();
+    System.out.printf("wrote %s.dzi, %d levels in %.1f s%n", out, levels, (System.nanoTime() - start) / 1e9);
+  }
+
+  private static int ceilShift(int size, int shift)
+  {
+    return (int) (((long) size + (1L << shift) - 1) >> shift);
+  }
+
+  private void writeDescriptor() throws IOException
+  {
+    try (PrintWriter writer = new PrintWriter(out + ".dzi", "UTF-8"))
+    {
+      writer.println("<?xml version=\"1.0\" encoding=\"UTF-8\"?>");
+      writer.println("<Image xmlns=\"http://schemas.microsoft.com/deepzoom/2008\" Format=\"png\" Overlap=\"0\""
+              + " TileSize=\"" + tileSize + "\">");
+      writer.println("  <Size Width=\"" + width + "\" Height=\"" + height + "\"/>");
+      writer.println("</Image>");
+    }
+  }
+
+  /**
+   * one level of the pyramid, collecting rows into a band of tiles.
+   */
+  private class Level
+  {
+    private final int level;
+    private final int width, height;
+    private final Level below;            // half the size, null at 1x1
+    private final int[] band;             // argb, tileSize rows
+    private int bandRow;                  // image row of the band's first row
+    private int filled;                   // rows of the band filled
+
+    Level(int level, int width, int height, Level below)
+    {
+      this.level = level;
+      this.width = width;
+      this.height = height;
+      this.below = below;
+      this.band = new int[width * tileSize];
+      new File(out + "_files" + File.separator + level).mkdirs();
+    }
+
+    /**
+     * appends rows to the band, writing it out each time it fills.
+     * @param argb rows of this level's width
+     * @param rows number of rows in argb
+     */
+    void add(int[] argb, int rows) throws IOException
+    {
+      int row = 0;
+      while (row < rows)
+      {
+        int count = Math.min(rows - row, tileSize - filled);
+        System.arraycopy(argb, row * width, band, filled * width, count * width);
+        filled += count;
+        row += count;
+        if (filled == tileSize || bandRow + filled == height) flush();
+      }
+    }
+
+    /**
+     * writes out any partly filled band, here and below.
+     */
+    void finish() throws IOException
+    {
+      if (filled > 0) flush();
+      if (below != null) below.finish();
+    }
+
+    private void flush() throws IOException
+    {
+      writeTiles();
+      if (below != null) below.add(halve(), (filled + 1) / 2);
+      bandRow += filled;
+      filled = 0;
+    }
+
+    private void writeTiles() throws IOException
+    {
+      List<Callable<Void>> tiles = new ArrayList<>();
+      int tileRow = bandRow / tileSize;
+      for (int x = 0; x < width; x += tileSize)
+      {
+        int tileX = x, tileWidth = Math.min(tileSize, width - x);
+        tiles.add(() ->
+        {
+          BufferedImage image = new BufferedImage(tileWidth, filled, BufferedImage.TYPE_INT_RGB);
+          image.setRGB(0, 0, tileWidth, filled, band, tileX, width);
+          String name = tileX / tileSize + "_" + tileRow + ".png";
+          ImageIO.write(image, "png", new File(out + "_files" + File.separator + level, name));
+          return null;
+        });
+      }
+      try
+      {
+        for (Future<Void> tile : writers.invokeAll(tiles)) tile.get();
+      }
+      catch (InterruptedException e)
+      {
+        Thread.currentThread().interrupt();
+        throw new IOException(e);
+      }
+      catch (ExecutionException e)
+      {
+        throw new IOException(e.getCause());
+      }
+    }
+
+    /**
+     * @return the filled rows averaged 2x2 to the width of the level below.
+     */
+    private int[] halve()
+    {
+      int halfWidth = below.width;
+      int halfRows = (filled + 1) / 2;
+      int[] half = new int[halfWidth * halfRows];
+      for (int row = 0; row < halfRows; row++)
+      {
+        int top = 2 * row * width;
+        int bottom = Math.min(2 * row + 1, filled - 1) * width;
+        for (int col = 0; col < halfWidth; col++)
+        {
+          int left = 2 * col, right = Math.min(2 * col + 1, width - 1);
+          half[row * halfWidth + col] = average(band[top + left], band[top + right], band[bottom + left],
+                  band[bottom + right]);
+        }
+      }
+      return half;
+    }
+  }
+
+  /**
+   * @return the channel by channel average of four argb colors.
+   */
+  private static int average(int a, int b, int c, int d)
+  {
+    int argb = 0xFF000000;
+    for (int shift = 0; shift < 24; shift += 8)
+    {
+      int sum = (a >> shift & 0xFF) + (b >> shift & 0xFF) + (c >> shift & 0xFF) + (d >> shift & 0xFF);
+      argb |= (sum + 2) / 4 << shift;
+    }
+    return argb;
+  }
+}
@@ -1,26 +1,44 @@
 package CS351_FractalsLab;
 
+import javafx.application.Platform;
 import javafx.scene.canvas.Canvas;
-import javafx.scene.canvas.GraphicsContext;
-import javafx.scene.paint.Color;
+import javafx.scene.image.PixelFormat;
+import javafx.scene.image.WritableImage;
+import javafx.scene.input.KeyCode;
 
 /**
  * Created by Kevin Cox on 4/1/2017.
  *
  * Simple class containing everything related to Mandelbrot sets and  updating the
- * canvas.
+ * canvas. Pixels are computed in tiles by a TileRenderer off the FX thread,
+ * finished tiles are copied into a WritableImage and drawn to the canvas.
+ * Scrolling zooms about the cursor and dragging pans, each restarts the
+ * render from its coarse pass. Zooms go far past double precision, deep
+ * views are rendered by perturbation around a BigDecimal reference orbit.
+ * Drags move by whole pixels so the renderer can reuse the overlap, and
+ * pressing C switches palette by recoloring the counts already computed.
+ * T turns border tracing on and off.
  */
 class Mandelbrot
 {
+  private static final double ZOOM_IN = 0.8;  // span factor per scroll notch
+  private static final int ITERATIONS_PER_HALVING = 40;  // deeper views need longer orbits
   private Canvas canvas;
   private int maxIterations;
   private Controller controller;
+  private TileRenderer renderer;
+  private WritableImage image;
+  private TileRenderer.Frame frame;       // render being shown, tiles of older ones are dropped
+  private Viewport view = Viewport.DEFAULT;
+  private double dragX, dragY;
+  private int palette;                    // index into Palette.ALL
 
   Mandelbrot(int iterations, Controller controller)
   {
     this.controller = controller;
     this.maxIterations = iterations;
     canvas = new Canvas();
+    renderer = new TileRenderer(Runtime.getRuntime().availableProcessors());
     System.out.println("initializing canvas");
   }
 
@@ -34,44 +52,74 @@ class Mandelbrot
     controller.anchorPane.getChildren().add(canvas);
     canvas.heightProperty().addListener(event -> update());
     canvas.widthProperty().addListener(event -> update());
+    canvas.setOnScroll(event ->
+    {
+      if (event.getDeltaY() == 0) return;
+      double factor = event.getDeltaY() > 0 ? ZOOM_IN : 1 / ZOOM_IN;
+      view = view.zoom(factor, event.getX(), event.getY(), (int) canvas.getWidth(), (int) canvas.getHeight());
+      update();
+    });
+    canvas.setFocusTraversable(true);
+    canvas.setOnKeyPressed(event ->
+    {
+      if (event.getCode() == KeyCode.C) palette = (palette + 1) % Palette.ALL.length;
+      else if (event.getCode() == KeyCode.T) renderer.setBorderTracing(!renderer.isBorderTracing());
+      else return;
+      update();
+    });
+    canvas.setOnMousePressed(event ->
+    {
+      canvas.requestFocus();
+      dragX = event.getX();
+      dragY = event.getY();
+    });
+    canvas.setOnMouseDragged(event ->
+    {
+      double dx = Math.rint(event.getX() - dragX);
+      double dy = Math.rint(event.getY() - dragY);
+      if (dx == 0 && dy == 0) return;
+      view = view.pan(dx, dy, (int) canvas.getWidth());
+      dragX += dx;
+      dragY += dy;
+      update();
+    });
   }
 
   /**
-   * updated the canvas and checks the convergence of each c. Uses threshold to determine
-   * whether converging or diverging, and colors the canvas based off of iterations and
-   * maxIterations.
-   *
-   * version from http://jonisalonen.com/2013/lets-draw-the-mandelbrot-set/
+   * starts rendering the canvas at its current size. Tiles show up as they
+   * finish, the FX thread only copies pixels.
    */
   private void update()
   {
-    int width = Main.width;
-    int height = Main.height;
-    GraphicsContext gc = canvas.getGraphicsContext2D();
-    for (int row = 0; row < height; row++) {
-      for (int col = 0; col < width; col++) {
-        double c_re = (col - width/2)*4.0/width;
-        double c_im = (row - height/2)*4.0/width;
-        double x = 0, y = 0;
-        int iterations = 0;
-        int threshold = 4;
-        while (x*x+y*y < threshold && iterations < maxIterations) {
-          double x_new = x*x-y*y+c_re;
-          y = 2*x*y+c_im;
-          x = x_new;
-          iterations++;
-        }
-        double t1 = (double) iterations / maxIterations;
-        double c1 = Math.min(255 * 2 * t1, 255);
-        double c2 = Math.max(255 * (2 * t1 - 1), 0);
-        if (iterations != maxIterations) {
-          gc.setFill(Color.color(c2 / 255.0, c1 / 255.0, c2 / 255.0));
-        } else {
-          gc.setFill(Color.RED);
-        }
-        gc.fillRect(col, row, 1, 1);
-      }
+    int width = (int) canvas.getWidth();
+    int height = (int) canvas.getHeight();
+    if (width <= 0 || height <= 0) return;
+    if (image == null || image.getWidth() != width || image.getHeight() != height)
+    {
+      image = new WritableImage(width, height);
     }
+    frame = renderer.render(view, width, height, iterationsFor(view), Palette.ALL[palette],
+            (done, x, y, w, h) -> Platform.runLater(() -> showTile(done, x, y, w, h)));
   }
 
+  /**
+   * @return maxIterations, plus more for each halving of the span past the
+   * default view.
+   */
+  private int iterationsFor(Viewport view)
+  {
+    double halvings = Math.log(Viewport.DEFAULT.span / view.span) / Math.log(2);
+    return maxIterations + (int) Math.max(0, halvings * ITERATIONS_PER_HALVING);
+  }
+
+  /**
+   * copies a finished tile into the image and draws it. Called on the FX thread.
+   */
+  private void showTile(TileRenderer.Frame done, int x, int y, int width, int height)
+  {
+    if (done != frame) return;
+    image.getPixelWriter().setPixels(x, y, width, height, PixelFormat.getIntArgbInstance(), done.argb,
+            y * done.width + x, done.width);
+    canvas.getGraphicsContext2D().drawImage(image, x, y, width, height, x, y, width, height);
+  }
 }
@@ -0,0 +1,174 @@
+package CS351_FractalsLab;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+
+/**
+ * The escape time loop, one row of pixels at a time. Kept apart from the
+ * renderer so the tiles can be computed on any thread. Deep views iterate
+ * each pixel as an offset from a ReferenceOrbit instead, without the
+ * interior shortcuts: c and z as doubles are too coarse there to trust.
+ *
+ * Rows go to the VectorKernel when the JVM has jdk.incubator.vector and
+ * the kernel was compiled from vector/, or to the scalar loop here if not
+ * or if -Dfractals.scalar=true. It is called through a MethodHandle, so
+ * this compiles without the module.
+ */
+class MandelbrotKernel
+{
+  private static final double THRESHOLD = 4;
+  private static final double PERIOD_EPSILON = 1e-14;  // closer than this to the saved point is a cycle
+  private static final MethodHandle VECTOR_ROW = findVectorRow();   // null for the scalar loop
+
+  /**
+   * iterations for a run of pixels along one row, evenly spaced.
+   * @param re real part of the first pixel
+   * @param step real distance between pixels
+   * @param im imaginary part of the row
+   * @param out receives the iteration count of each pixel, maxIterations if it never escaped
+   * @param offset index in out of the first pixel
+   * @param stride distance in out between pixels
+   * @param count number of pixels
+   * @param maxIterations iteration budget
+   */
+  static void iterateRow(double re, double step, double im, int[] out, int offset, int stride, int count,
+                         int maxIterations)
+  {
+    if (VECTOR_ROW != null)
+    {
+      try
+      {
+        VECTOR_ROW.invokeExact(re, step, im, out, offset, stride, count, maxIterations);
+      }
+      catch (RuntimeException | Error e)
+      {
+        throw e;
+      }
+      catch (Throwable e)
+      {
+        throw new IllegalStateException(e);
+      }
+      return;
+    }
+    for (int i = 0; i < count; i++) out[offset + i * stride] = iterate(re + i * step, im, maxIterations);
+  }
+
+  /**
+   * @return VectorKernel.iterateRow, null if -Dfractals.scalar=true, the JVM
+   * lacks jdk.incubator.vector or the kernel wasn't compiled.
+   */
+  private static MethodHandle findVectorRow()
+  {
+    if (Boolean.getBoolean("fractals.scalar")) return null;
+    if (!ModuleLayer.boot().findModule("jdk.incubator.vector").isPresent()) return null;
+    try
+    {
+      Class<?> kernel = Class.forName("CS351_FractalsLab.VectorKernel");
+      MethodType row = MethodType.methodType(void.class, double.class, double.class, double.class, int[].class,
+              int.class, int.class, int.class, int.class);
+      return MethodHandles.lookup().findStatic(kernel, "iterateRow", row);
+    }
+    catch (ReflectiveOperationException e)
+    {
+      return null;
+    }
+  }
+
+  /**
+   * iterations for a run of pixels along one row of a deep view, as offsets
+   * from the reference orbit of its centre.
+   * @param dcRe real offset from the centre of the first pixel
+   * @param step real distance between pixels
+   * @param dcIm imaginary offset from the centre of the row
+   * @see #iterateRow(double, double, double, int[], int, int, int, int)
+   */
+  static void iterateRow(ReferenceOrbit orbit, double dcRe, double step, double dcIm, int[] out, int offset,
+                         int stride, int count, int maxIterations)
+  {
+    for (int i = 0; i < count; i++)
+    {
+      out[offset + i * stride] = iterate(orbit, dcRe + i * step, dcIm, maxIterations);
+    }
+  }
+
+  /**
+   * perturbation: the pixel's orbit is Z_m + dz with Z the reference, and
+   * dz_m+1 = 2 Z_m dz_m + dz_m^2 + dc stays small enough for a double.
+   * Starts from the orbit's series at its skip. When the pixel's orbit gets
+   * closer to 0 than dz, or the reference runs out, dz is rebased onto the
+   * start of the reference so it doesn't lose its precision.
+   * @return iterations before the pixel escaped, maxIterations if it didn't.
+   */
+  static int iterate(ReferenceOrbit orbit, double dcRe, double dcIm, int maxIterations)
+  {
+    double[] zr = orbit.re, zi = orbit.im;
+    int last = orbit.length - 1;
+    double dc2Re = dcRe*dcRe-dcIm*dcIm, dc2Im = 2*dcRe*dcIm;
+    double dc3Re = dc2Re*dcRe-dc2Im*dcIm, dc3Im = dc2Re*dcIm+dc2Im*dcRe;
+    double dzRe = orbit.aRe*dcRe-orbit.aIm*dcIm + orbit.bRe*dc2Re-orbit.bIm*dc2Im + orbit.cRe*dc3Re-orbit.cIm*dc3Im;
+    double dzIm = orbit.aRe*dcIm+orbit.aIm*dcRe + orbit.bRe*dc2Im+orbit.bIm*dc2Re + orbit.cRe*dc3Im+orbit.cIm*dc3Re;
+    int iterations = Math.min(orbit.skip, maxIterations);
+    int m = iterations;
+    while (iterations < maxIterations) {
+      double x = zr[m]+dzRe, y = zi[m]+dzIm;
+      double magnitude = x*x+y*y;
+      if (magnitude >= THRESHOLD) return iterations;
+      if (magnitude < dzRe*dzRe+dzIm*dzIm || m == last) {
+        dzRe = x;
+        dzIm = y;
+        m = 0;
+      }
+      double tRe = 2*zr[m]+dzRe, tIm = 2*zi[m]+dzIm;
+      double dz_new = tRe*dzRe-tIm*dzIm+dcRe;
+      dzIm = tRe*dzIm+tIm*dzRe+dcIm;
+      dzRe = dz_new;
+      m++;
+      iterations++;
+    }
+    return iterations;
+  }
+
+  /**
+   * version from http://jonisalonen.com/2013/lets-draw-the-mandelbrot-set/
+   * Points in the main cardioid or the period 2 bulb are answered without
+   * iterating. Other orbits are checked against a saved point, moved on at
+   * every power of two iterations (Brent), and stop as soon as they come
+   * back to it, since an orbit that has fallen into a cycle never escapes.
+   * @return iterations before c escaped, maxIterations if it didn't.
+   */
+  static int iterate(double cRe, double cIm, int maxIterations)
+  {
+    if (inCardioidOrBulb(cRe, cIm)) return maxIterations;
+    double x = 0, y = 0;
+    double savedX = 0, savedY = 0;
+    int iterations = 0;
+    int steps = 0, period = 1;
+    while (x*x+y*y < THRESHOLD && iterations < maxIterations) {
+      double x_new = x*x-y*y+cRe;
+      y = 2*x*y+cIm;
+      x = x_new;
+      iterations++;
+      if (Math.abs(x-savedX) < PERIOD_EPSILON && Math.abs(y-savedY) < PERIOD_EPSILON) return maxIterations;
+      if (++steps == period) {
+        steps = 0;
+        period *= 2;
+        savedX = x;
+        savedY = y;
+      }
+    }
+    return iterations;
+  }
+
+  /**
+   * @return true if c is in the main cardioid or the disc of the period 2
+   * bulb, both wholly inside the set.
+   */
+  static boolean inCardioidOrBulb(double cRe, double cIm)
+  {
+    double xq = cRe-0.25;
+    double q = xq*xq+cIm*cIm;
+    if (q*(q+xq) <= 0.25*cIm*cIm) return true;
+    return (cRe+1)*(cRe+1)+cIm*cIm <= 0.0625;
+  }
+}
@@ -0,0 +1,42 @@
+package CS351_FractalsLab;
+
+/**
+ * Maps an iteration count to an argb color. Kept free of JavaFX so the
+ * BatchRenderer can color tiles without it.
+ */
+interface Palette
+{
+  Palette[] ALL = {Palette::original, Palette::blues};
+
+  int color(int iterations, int maxIterations);
+
+  /**
+   * colors c based off of its iterations and maxIterations, red if it never
+   * escaped.
+   * @return the color as argb.
+   */
+  static int original(int iterations, int maxIterations)
+  {
+    if (iterations == maxIterations) return 0xFFFF0000;
+    double t1 = (double) iterations / maxIterations;
+    double c1 = Math.min(255 * 2 * t1, 255);
+    double c2 = Math.max(255 * (2 * t1 - 1), 0);
+    int green = (int) Math.round(c1);
+    int other = (int) Math.round(c2);
+    return 0xFF000000 | other << 16 | green << 8 | other;
+  }
+
+  /**
+   * dark blue to white by the square root of iterations over maxIterations,
+   * black if it never escaped.
+   * @return the color as argb.
+   */
+  static int blues(int iterations, int maxIterations)
+  {
+    if (iterations == maxIterations) return 0xFF000000;
+    double t = Math.sqrt((double) iterations / maxIterations);
+    int blue = (int) Math.round(64 + 191 * t);
+    int other = (int) Math.round(255 * t * t);
+    return 0xFF000000 | other << 16 | other << 8 | blue;
+  }
+}
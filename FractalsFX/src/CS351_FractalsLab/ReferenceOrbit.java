@@ -0,0 +1,78 @@
+package CS351_FractalsLab;
+
+import java.math.BigDecimal;
+import java.math.MathContext;
+
+/**
+ * The orbit of a deep view's centre, iterated once in BigDecimal and
+ * rounded to doubles. Every pixel is then iterated as a small offset from
+ * this orbit in plain double, see MandelbrotKernel.
+ *
+ * Also holds a three term series for the pixel offsets, dz = A dc + B dc^2
+ * + C dc^3, run forward while the cubic term stays negligible for the
+ * farthest pixel from the centre. Pixels start from the series at skip
+ * instead of iterating up to it.
+ */
+class ReferenceOrbit
+{
+  private static final double THRESHOLD = 4;
+  private static final double SERIES_TOLERANCE = 1e-9;  // largest cubic term, relative to the linear
+
+  final double[] re;                      // Z_n for n < length, the last may have escaped
+  final double[] im;
+  final int length;
+  final int skip;                         // iterations the series replaces
+  final double aRe, aIm, bRe, bIm, cRe, cIm;
+
+  /**
+   * @param view deep viewport, the orbit is of its centre.
+   * @param radius distance from the centre to the farthest pixel.
+   * @param maxIterations iteration budget.
+   */
+  ReferenceOrbit(Viewport view, double radius, int maxIterations)
+  {
+    MathContext digits = view.precision();
+    BigDecimal cr = view.centerRe, ci = view.centerIm;
+    BigDecimal zr = BigDecimal.ZERO, zi = BigDecimal.ZERO;
+    BigDecimal two = BigDecimal.valueOf(2);
+    double[] re = new double[maxIterations + 1];
+    double[] im = new double[maxIterations + 1];
+    int n = 0;
+    while (true)
+    {
+      re[n] = zr.doubleValue();
+      im[n] = zi.doubleValue();
+      if (n == maxIterations || re[n] * re[n] + im[n] * im[n] >= THRESHOLD) break;
+      BigDecimal zr2 = zr.multiply(zr, digits);
+      BigDecimal zi2 = zi.multiply(zi, digits);
+      zi = two.multiply(zr, digits).multiply(zi, digits).add(ci, digits);
+      zr = zr2.subtract(zi2, digits).add(cr, digits);
+      n++;
+    }
+    this.re = re;
+    this.im = im;
+    this.length = n + 1;
+
+    // A_n+1 = 2 Z_n A_n + 1, B_n+1 = 2 Z_n B_n + A_n^2, C_n+1 = 2 Z_n C_n + 2 A_n B_n
+    double ar = 0, ai = 0, br = 0, bi = 0, cr2 = 0, ci2 = 0;
+    int k = 0;
+    while (k < length - 1)
+    {
+      double zRe = 2 * re[k], zIm = 2 * im[k];
+      double nar = zRe * ar - zIm * ai + 1;
+      double nai = zRe * ai + zIm * ar;
+      double nbr = zRe * br - zIm * bi + ar * ar - ai * ai;
+      double nbi = zRe * bi + zIm * br + 2 * ar * ai;
+      double ncr = zRe * cr2 - zIm * ci2 + 2 * (ar * br - ai * bi);
+      double nci = zRe * ci2 + zIm * cr2 + 2 * (ar * bi + ai * br);
+      double cubic = Math.hypot(ncr, nci) * radius * radius;
+      if (!Double.isFinite(cubic) || cubic > SERIES_TOLERANCE * Math.hypot(nar, nai)) break;
+      ar = nar; ai = nai; br = nbr; bi = nbi; cr2 = ncr; ci2 = nci;
+      k++;
+    }
+    this.skip = k;
+    this.aRe = ar; this.aIm = ai;
+    this.bRe = br; this.bIm = bi;
+    this.cRe = cr2; this.cIm = ci2;
+  }
+}
@@ -0,0 +1,430 @@
+package CS351_FractalsLab;
+
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * Renders the viewport in square tiles on a ForkJoinPool. Each tile's
+ * iteration counts and colors go into int buffers the size of the
+ * viewport, and the listener is told as each tile finishes so it can be
+ * shown right away. Tiles are split in halves recursively, idle workers
+ * steal the rest.
+ *
+ * Interactive renders are progressive: a pass computing one pixel per
+ * 8x8 block and filling the block with it, then 4x4, 2x2 and every pixel.
+ * Each pass only computes pixels no earlier pass did, so all four cost
+ * no more than one full pass. Starting a new render cancels the last one,
+ * its workers stop at the next row.
+ *
+ * Deep views first compute the ReferenceOrbit of their centre, then every
+ * tile iterates its pixels by perturbation from it.
+ *
+ * The iteration counts of the last finished frame are kept. A new view
+ * at the same scale whose pixels land on the old ones, as after a pan,
+ * copies the overlap and only iterates the newly exposed strips, in one
+ * full resolution pass. The same view in a new palette iterates nothing
+ * and only recolors the counts.
+ *
+ * With border tracing on, renders are a single pass and each tile is
+ * traced Mariani-Silver style: a rectangle's border is computed, and if
+ * it is all in the set the inside is filled without iterating, as the set
+ * is connected with no holes. Otherwise the inside is split in four and
+ * traced the same way.
+ */
+class TileRenderer
+{
+  static final int TILE_SIZE = 64;
+  static final int COARSEST = 8;          // block size of the first pass, divides TILE_SIZE
+  private static final double SNAP = 1e-3;  // pixels off the old grid still counted as on it
+  private static final int TRACE_MIN = 6;   // rectangles this thin are just computed
+
+  private final ForkJoinPool pool;
+  private Frame current;
+  private volatile boolean tracing;
+
+  /**
+   * told about each finished tile of each pass, on a pool thread.
+   */
+  interface TileListener
+  {
+    void tileDone(Frame frame, int x, int y, int width, int height);
+  }
+
+  /**
+   * buffers of one render, row major.
+   */
+  static class Frame
+  {
+    final Viewport view;
+    final int width;
+    final int height;
+    final int maxIterations;
+    final Palette palette;
+    final boolean tracing;
+    final int[] iterations;
+    final int[] argb;
+    final int top;                        // rows are rows top.. of the view viewHeight high
+    final int viewHeight;
+    ReferenceOrbit orbit;                 // set before the first pass if the view is deep
+    private int knownLeft, knownTop, knownRight, knownBottom;  // counts copied from the last frame
+    private volatile boolean cancelled;
+    private volatile boolean complete;
+
+    Frame(Viewport view, int width, int height, int maxIterations, Palette palette,
+          boolean tracing)
+    {
+      this(view, width, height, 0, height, maxIterations, palette, tracing);
+    }
+
+    Frame(Viewport view, int width, int height, int top, int viewHeight, int maxIterations,
+          Palette palette, boolean tracing)
+    {
+      this.view = view;
+      this.width = width;
+      this.height = height;
+      this.maxIterations = maxIterations;
+      this.palette = palette;
+      this.tracing = tracing;
+      this.top = top;
+      this.viewHeight = viewHeight;
+      this.iterations = new int[width * height];
+      this.argb = new int[width * height];
+    }
+
+    /**
+     * stops the render, tiles not yet started are skipped.
+     */
+    void cancel()
+    {
+      cancelled = true;
+    }
+
+    boolean isCancelled()
+    {
+      return cancelled;
+    }
+
+    /**
+     * @return true once every pixel has its final count.
+     */
+    boolean isComplete()
+    {
+      return complete;
+    }
+
+    /**
+     * copies the counts of a finished frame where its pixels fall on this
+     * one's. Only works if they are the same size and scale and the centres
+     * are a whole number of pixels apart.
+     * @return true if anything was copied.
+     */
+    private boolean reuse(Frame last)
+    {
+      if (last.width != width || last.height != height || last.maxIterations != maxIterations ||
+              last.view.span != view.span) return false;
+      double pixel = view.pixelSize(width);
+      double shiftX = last.view.centerRe.subtract(view.centerRe).doubleValue() / pixel;
+      double shiftY = last.view.centerIm.subtract(view.centerIm).doubleValue() / pixel;
+      long dx = Math.round(shiftX), dy = Math.round(shiftY);
+      if (Math.abs(shiftX - dx) > SNAP || Math.abs(shiftY - dy) > SNAP) return false;
+      if (Math.abs(dx) >= width || Math.abs(dy) >= height) return false;
+      knownLeft = (int) Math.max(0, dx);
+      knownRight = (int) Math.min(width, width + dx);
+      knownTop = (int) Math.max(0, dy);
+      knownBottom = (int) Math.min(height, height + dy);
+      for (int row = knownTop; row < knownBottom; row++)
+      {
+        System.arraycopy(last.iterations, (int) ((row - dy) * width + knownLeft - dx), iterations,
+                row * width + knownLeft, knownRight - knownLeft);
+      }
+      return true;
+    }
+
+    private boolean overlapsKnown(int x, int y, int width, int height)
+    {
+      return x < knownRight && x + width > knownLeft && y < knownBottom && y + height > knownTop;
+    }
+
+    private boolean isAllKnown()
+    {
+      return knownLeft == 0 && knownTop == 0 && knownRight == width && knownBottom == height;
+    }
+
+    private boolean isKnown(int row)
+    {
+      return row >= knownTop && row < knownBottom;
+    }
+  }
+
+  /**
+   * @param threads pool parallelism.
+   */
+  TileRenderer(int threads)
+  {
+    pool = new ForkJoinPool(threads);
+  }
+
+  /**
+   * turns Mariani-Silver border tracing on or off for later renders.
+   */
+  void setBorderTracing(boolean tracing)
+  {
+    this.tracing = tracing;
+  }
+
+  boolean isBorderTracing()
+  {
+    return tracing;
+  }
+
+  /**
+   * cancels the render in progress, if any, and starts a new one. Returns
+   * at once. Called from one thread, the FX thread.
+   * @param view part of the plane to draw
+   * @param width pixels
+   * @param height pixels
+   * @param maxIterations iteration budget
+   * @param palette colors for the counts
+   * @param listener told as tiles finish
+   * @return the frame being filled.
+   */
+  Frame render(Viewport view, int width, int height, int maxIterations, Palette palette,
+               TileListener listener)
+  {
+    Frame last = current;
+    if (last != null) last.cancel();
+    Frame frame = new Frame(view, width, height, maxIterations, palette, tracing);
+    current = frame;
+    boolean reused = last != null && last.isComplete() && frame.reuse(last);
+    pool.execute(new PassTask(frame, listener, reused || tracing ? 1 : COARSEST));
+    return frame;
+  }
+
+  /**
+   * renders a viewport at full resolution in one pass and waits for it,
+   * e.g. off screen.
+   */
+  Frame renderAndWait(Viewport view, int width, int height, int maxIterations, Palette palette)
+  {
+    return renderAndWait(view, width, height, 0, height, maxIterations, palette, null);
+  }
+
+  /**
+   * renders rows [top, top + height) of a viewport viewHeight rows high at
+   * full resolution and waits for it, e.g. an image too big to hold in one
+   * frame, rendered in bands. Every band of a deep view can share the one
+   * orbit of the view's centre, pass the first band's back in.
+   * @param orbit orbit of the whole view, as left in an earlier band's
+   *              frame, or null to compute it if the view is deep.
+   */
+  Frame renderAndWait(Viewport view, int width, int height, int top, int viewHeight, int maxIterations,
+                      Palette palette, ReferenceOrbit orbit)
+  {
+    Frame frame = new Frame(view, width, height, top, viewHeight, maxIterations, palette, tracing);
+    frame.orbit = orbit;
+    pool.invoke(new PassTask(frame, null, 1));
+    return frame;
+  }
+
+  /**
+   * one pass over a tile. Pixels at multiples of block are computed and
+   * fill the block below and right of them, except those a coarser pass
+   * already did. Counts copied from the last frame are only colored.
+   */
+  private static void renderTile(Frame frame, int block, int coarsest, int x, int y, int width, int height)
+  {
+    for (int row = y; row < y + height; row += block)
+    {
+      if (frame.isCancelled()) return;
+      if (frame.isKnown(row))
+      {
+        // only in single pass renders, block is 1
+        int left = Math.max(x, frame.knownLeft), right = Math.min(x + width, frame.knownRight);
+        renderRun(frame, row, 1, x, Math.min(x + width, left), 1, 1);
+        for (int i = row * frame.width + left; i < row * frame.width + right; i++)
+        {
+          frame.argb[i] = frame.palette.color(frame.iterations[i], frame.maxIterations);
+        }
+        renderRun(frame, row, 1, Math.max(x, right), x + width, 1, 1);
+        continue;
+      }
+      boolean doneRow = block < coarsest && row % (2 * block) == 0;
+      renderRun(frame, row, Math.min(block, y + height - row), doneRow ? x + block : x, x + width,
+              doneRow ? 2 * block : block, block);
+    }
+  }
+
+  /**
+   * computes the border of a rectangle at full resolution, fills the
+   * inside if the border is all in the set, else traces its quarters.
+   */
+  private static void traceRectangle(Frame frame, int x, int y, int width, int height)
+  {
+    if (frame.isCancelled() || width <= 0 || height <= 0) return;
+    if (width < TRACE_MIN || height < TRACE_MIN)
+    {
+      for (int row = y; row < y + height; row++) renderRun(frame, row, 1, x, x + width, 1, 1);
+      return;
+    }
+    int max = frame.maxIterations;
+    int right = x + width - 1, bottom = y + height - 1;
+    renderRun(frame, y, 1, x, x + width, 1, 1);
+    renderRun(frame, bottom, 1, x, x + width, 1, 1);
+    for (int row = y + 1; row < bottom; row++) renderRun(frame, row, 1, x, x + width, width - 1, 1);
+
+    boolean inSet = true;
+    for (int col = x; col <= right && inSet; col++)
+    {
+      inSet = frame.iterations[y * frame.width + col] == max &&
+              frame.iterations[bottom * frame.width + col] == max;
+    }
+    for (int row = y + 1; row < bottom && inSet; row++)
+    {
+      inSet = frame.iterations[row * frame.width + x] == max &&
+              frame.iterations[row * frame.width + right] == max;
+    }
+    if (inSet)
+    {
+      int argb = frame.palette.color(max, max);
+      for (int row = y + 1; row < bottom; row++)
+      {
+        Arrays.fill(frame.iterations, row * frame.width + x + 1, row * frame.width + right, max);
+        Arrays.fill(frame.argb, row * frame.width + x + 1, row * frame.width + right, argb);
+      }
+      return;
+    }
+    int innerWidth = width - 2, innerHeight = height - 2;
+    int halfWidth = innerWidth / 2, halfHeight = innerHeight / 2;
+    traceRectangle(frame, x + 1, y + 1, halfWidth, halfHeight);
+    traceRectangle(frame, x + 1 + halfWidth, y + 1, innerWidth - halfWidth, halfHeight);
+    traceRectangle(frame, x + 1, y + 1 + halfHeight, halfWidth, innerHeight - halfHeight);
+    traceRectangle(frame, x + 1 + halfWidth, y + 1 + halfHeight, innerWidth - halfWidth,
+            innerHeight - halfHeight);
+  }
+
+  /**
+   * computes pixels from, from + stride, ... before to on a row and fills
+   * the block of each, clipped to rows below row and columns before to.
+   */
+  private static void renderRun(Frame frame, int row, int rows, int from, int to, int stride, int block)
+  {
+    if (from >= to) return;
+    int count = (to - from + stride - 1) / stride;
+    int offset = row * frame.width + from;
+    int max = frame.maxIterations;
+    double step = stride * frame.view.pixelSize(frame.width);
+    if (frame.orbit == null)
+    {
+      MandelbrotKernel.iterateRow(frame.view.re(from, frame.width), step,
+              frame.view.im(frame.top + row, frame.width, frame.viewHeight), frame.iterations, offset, stride,
+              count, max);
+    }
+    else
+    {
+      MandelbrotKernel.iterateRow(frame.orbit, frame.view.deltaRe(from, frame.width), step,
+              frame.view.deltaIm(frame.top + row, frame.width, frame.viewHeight), frame.iterations, offset,
+              stride, count, max);
+    }
+    for (int i = 0; i < count; i++)
+    {
+      int col = from + i * stride;
+      int iterations = frame.iterations[offset + i * stride];
+      int argb = frame.palette.color(iterations, max);
+      int endCol = Math.min(col + block, to);
+      for (int r = row; r < row + rows; r++)
+      {
+        for (int c = r * frame.width + col; c < r * frame.width + endCol; c++)
+        {
+          frame.iterations[c] = iterations;
+          frame.argb[c] = argb;
+        }
+      }
+    }
+  }
+
+  /**
+   * runs the passes one after another, each over every tile.
+   */
+  private static class PassTask extends RecursiveAction
+  {
+    private static final long serialVersionUID = 1L;
+
+    private final Frame frame;
+    private final TileListener listener;
+    private final int coarsest;
+
+    PassTask(Frame frame, TileListener listener, int coarsest)
+    {
+      this.frame = frame;
+      this.listener = listener;
+      this.coarsest = coarsest;
+    }
+
+    @Override
+    protected void compute()
+    {
+      if (frame.orbit == null && frame.view.isDeep(frame.width) && !frame.isAllKnown())
+      {
+        double radius = Math.hypot(frame.width, frame.viewHeight) / 2 * frame.view.pixelSize(frame.width);
+        frame.orbit = new ReferenceOrbit(frame.view, radius, frame.maxIterations);
+      }
+      int tilesAcross = (frame.width + TILE_SIZE - 1) / TILE_SIZE;
+      int tilesDown = (frame.height + TILE_SIZE - 1) / TILE_SIZE;
+      for (int block = coarsest; block >= 1 && !frame.isCancelled(); block /= 2)
+      {
+        new TileTask(frame, listener, block, coarsest, tilesAcross, 0, tilesAcross * tilesDown).invoke();
+      }
+      if (!frame.isCancelled()) frame.complete = true;
+    }
+  }
+
+  /**
+   * one pass over tiles [start, end) in row major tile order.
+   */
+  private static class TileTask extends RecursiveAction
+  {
+    private static final long serialVersionUID = 1L;
+
+    private final Frame frame;
+    private final TileListener listener;
+    private final int block, coarsest;
+    private final int tilesAcross;
+    private final int start, end;
+
+    TileTask(Frame frame, TileListener listener, int block, int coarsest, int tilesAcross, int start,
+             int end)
+    {
+      this.frame = frame;
+      this.listener = listener;
+      this.block = block;
+      this.coarsest = coarsest;
+      this.tilesAcross = tilesAcross;
+      this.start = start;
+      this.end = end;
+    }
+
+    @Override
+    protected void compute()
+    {
+      if (frame.isCancelled()) return;
+      if (end - start > 1)
+      {
+        int mid = (start + end) >>> 1;
+        invokeAll(new TileTask(frame, listener, block, coarsest, tilesAcross, start, mid),
+                new TileTask(frame, listener, block, coarsest, tilesAcross, mid, end));
+        return;
+      }
+      int x = (start % tilesAcross) * TILE_SIZE;
+      int y = (start / tilesAcross) * TILE_SIZE;
+      int width = Math.min(TILE_SIZE, frame.width - x);
+      int height = Math.min(TILE_SIZE, frame.height - y);
+      if (frame.tracing && !frame.overlapsKnown(x, y, width, height))
+      {
+        traceRectangle(frame, x, y, width, height);
+      }
+      else renderTile(frame, block, coarsest, x, y, width, height);
+      if (listener != null && !frame.isCancelled()) listener.tileDone(frame, x, y, width, height);
+    }
+  }
+}
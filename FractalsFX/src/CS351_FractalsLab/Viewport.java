@@ -0,0 +1,137 @@
+package CS351_FractalsLab;
+
+import java.math.BigDecimal;
+import java.math.MathContext;
+
+/**
+ * The part of the complex plane on screen: a centre and the distance
+ * across the width of the window. Resizing keeps that distance, like
+ * the original 4 units across. Immutable, zooming and panning make a new
+ * one.
+ *
+ * The centre is kept in BigDecimal with enough digits for the zoom, so it
+ * stays exact long after doubles could no longer tell pixels apart. Past
+ * that point the view is deep and is rendered by perturbation around the
+ * centre, which only needs pixel offsets from it in double.
+ */
+class Viewport
+{
+  static final Viewport DEFAULT = new Viewport(BigDecimal.ZERO, BigDecimal.ZERO, 4);
+  private static final double DEEP_PIXEL = 1e-11;   // pixel size where doubles run out of bits
+  private static final double MIN_SPAN = 1e-250;    // pixel offsets and series terms must still fit in a double
+  private static final int GUARD_DIGITS = 20;
+
+  final BigDecimal centerRe;
+  final BigDecimal centerIm;
+  final double span;                      // plane units across the width
+  private final double re0, im0;          // centre rounded to doubles
+
+  Viewport(BigDecimal centerRe, BigDecimal centerIm, double span)
+  {
+    this.centerRe = centerRe;
+    this.centerIm = centerIm;
+    this.span = span;
+    this.re0 = centerRe.doubleValue();
+    this.im0 = centerIm.doubleValue();
+  }
+
+  Viewport(double centerRe, double centerIm, double span)
+  {
+    this(new BigDecimal(centerRe), new BigDecimal(centerIm), span);
+  }
+
+  /**
+   * @param width window width in pixels.
+   * @return plane units per pixel.
+   */
+  double pixelSize(int width)
+  {
+    return span / width;
+  }
+
+  /**
+   * @return true if pixels are too small for plain double iteration.
+   */
+  boolean isDeep(int width)
+  {
+    return pixelSize(width) < DEEP_PIXEL;
+  }
+
+  /**
+   * @return digits needed to place the centre to a small part of a pixel.
+   */
+  MathContext precision()
+  {
+    return precision(span);
+  }
+
+  private static MathContext precision(double span)
+  {
+    return new MathContext(Math.max(17, (int) Math.ceil(-Math.log10(span)) + GUARD_DIGITS));
+  }
+
+  /**
+   * @return real offset from the centre of pixel col of a window width wide.
+   */
+  double deltaRe(int col, int width)
+  {
+    return (col - width / 2) * pixelSize(width);
+  }
+
+  /**
+   * @return imaginary offset from the centre of pixel row of a window width x height.
+   */
+  double deltaIm(int row, int width, int height)
+  {
+    return (row - height / 2) * pixelSize(width);
+  }
+
+  /**
+   * @return real part at pixel col of a window width wide.
+   */
+  double re(int col, int width)
+  {
+    return re0 + deltaRe(col, width);
+  }
+
+  /**
+   * @return imaginary part at pixel row of a window width x height.
+   */
+  double im(int row, int width, int height)
+  {
+    return im0 + deltaIm(row, width, height);
+  }
+
+  /**
+   * zooms keeping the point under (x, y) where it is on screen. Stops at
+   * the deepest span offsets can be kept for.
+   * @param factor new span over old, below 1 zooms in.
+   * @return the zoomed viewport.
+   */
+  Viewport zoom(double factor, double x, double y, int width, int height)
+  {
+    double newSpan = Math.max(span * factor, MIN_SPAN);
+    factor = newSpan / span;
+    double pixel = pixelSize(width);
+    double offsetRe = (x - width / 2) * pixel * (1 - factor);
+    double offsetIm = (y - height / 2) * pixel * (1 - factor);
+    return moved(offsetRe, offsetIm, newSpan);
+  }
+
+  /**
+   * moves the picture by (dx, dy) pixels, as if dragged.
+   * @return the panned viewport.
+   */
+  Viewport pan(double dx, double dy, int width)
+  {
+    double pixel = pixelSize(width);
+    return moved(-dx * pixel, -dy * pixel, span);
+  }
+
+  private Viewport moved(double offsetRe, double offsetIm, double newSpan)
+  {
+    MathContext digits = precision(newSpan);
+    return new Viewport(centerRe.add(new BigDecimal(offsetRe), digits),
+            centerIm.add(new BigDecimal(offsetIm), digits), newSpan);
+  }
+}
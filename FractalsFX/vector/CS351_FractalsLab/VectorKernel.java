@@ -0,0 +1,103 @@
+package CS351_FractalsLab;
+
+import jdk.incubator.vector.DoubleVector;
+import jdk.incubator.vector.VectorMask;
+import jdk.incubator.vector.VectorOperators;
+import jdk.incubator.vector.VectorSpecies;
+
+/**
+ * The escape time loop on a lane of pixels at once with the incubating
+ * Vector API, 4 doubles per lane on AVX2 and 8 on AVX-512. Escaped lanes
+ * are masked off and the loop ends when none are left. Same counts as
+ * MandelbrotKernel.iterate, including its cardioid, bulb and cycle checks.
+ *
+ * Kept in its own source root, vector/, the only code needing
+ * --add-modules jdk.incubator.vector to compile, so src/ builds without
+ * it. MandelbrotKernel looks it up by name, and only when the module is
+ * in the boot layer, i.e. the JVM was started with the same option.
+ */
+class VectorKernel
+{
+  private static final VectorSpecies<Double> SPECIES = DoubleVector.SPECIES_PREFERRED;
+  static final int LANES = SPECIES.length();
+  private static final double THRESHOLD = 4;
+  private static final double PERIOD_EPSILON = 1e-14;
+
+  /**
+   * @see MandelbrotKernel#iterateRow(double, double, double, int[], int, int, int, int)
+   */
+  static void iterateRow(double re, double step, double im, int[] out, int offset, int stride, int count,
+                         int maxIterations)
+  {
+    double[] counts = new double[LANES];
+    DoubleVector iota = DoubleVector.zero(SPECIES).addIndex(1);
+    DoubleVector cIm = DoubleVector.broadcast(SPECIES, im);
+    int i = 0;
+    for (; i + LANES <= count; i += LANES)
+    {
+      DoubleVector cRe = iota.add(i).mul(step).add(re);
+      iterateLane(cRe, cIm, maxIterations).intoArray(counts, 0);
+      for (int l = 0; l < LANES; l++) out[offset + (i + l) * stride] = (int) counts[l];
+    }
+    for (; i < count; i++)
+    {
+      out[offset + i * stride] = MandelbrotKernel.iterate(re + i * step, im, maxIterations);
+    }
+  }
+
+  /**
+   * @return iterations of each lane, maxIterations where it never escaped.
+   */
+  private static DoubleVector iterateLane(DoubleVector cRe, DoubleVector cIm, int maxIterations)
+  {
+    double max = maxIterations;
+    DoubleVector zero = DoubleVector.zero(SPECIES);
+    DoubleVector counts = zero.blend(max, inCardioidOrBulb(cRe, cIm));
+    VectorMask<Double> active = counts.compare(VectorOperators.LT, max);
+    DoubleVector x = zero, y = zero;
+    DoubleVector savedX = zero, savedY = zero;
+    int steps = 0, period = 1;
+    // escaped lanes keep iterating, only their counts are masked, and the
+    // loop checks for all lanes done every 8 iterations, reductions are slow
+    for (int iterations = 0; iterations < maxIterations; iterations++)
+    {
+      DoubleVector x2 = x.mul(x), y2 = y.mul(y);
+      active = active.and(x2.add(y2).compare(VectorOperators.LT, THRESHOLD));
+      if ((iterations & 7) == 0 && !active.anyTrue()) break;
+      DoubleVector xy = x.mul(y);
+      x = x2.sub(y2).add(cRe);
+      y = xy.add(xy).add(cIm);
+      counts = counts.add(1, active);
+
+      VectorMask<Double> cycled = active
+              .and(x.sub(savedX).abs().compare(VectorOperators.LT, PERIOD_EPSILON))
+              .and(y.sub(savedY).abs().compare(VectorOperators.LT, PERIOD_EPSILON));
+      counts = counts.blend(max, cycled);
+      active = active.andNot(cycled);
+      // blended rather than assigned in a branch, which would box the vectors
+      boolean save = ++steps == period;
+      if (save)
+      {
+        steps = 0;
+        period *= 2;
+      }
+      VectorMask<Double> saving = SPECIES.maskAll(save);
+      savedX = savedX.blend(x, saving);
+      savedY = savedY.blend(y, saving);
+    }
+    return counts;
+  }
+
+  /**
+   * @see MandelbrotKernel#inCardioidOrBulb(double, double)
+   */
+  private static VectorMask<Double> inCardioidOrBulb(DoubleVector cRe, DoubleVector cIm)
+  {
+    DoubleVector xq = cRe.sub(0.25);
+    DoubleVector im2 = cIm.mul(cIm);
+    DoubleVector q = xq.mul(xq).add(im2);
+    VectorMask<Double> cardioid = q.mul(q.add(xq)).compare(VectorOperators.LE, cIm.mul(0.25).mul(cIm));
+    DoubleVector re1 = cRe.add(1);
+    return cardioid.or(re1.mul(re1).add(im2).compare(VectorOperators.LE, 0.0625));
+  }
+}
@@ -0,0 +1,79 @@
+package cs351;
+
+/*
+ * Steps a striped engine the way Life does without a GUI: one
+ * BoardThread stripe per thread, split like Life.initializeThreads, the
+ * last stripe taking the leftover rows. The workers live as long as the
+ * stepper and meet at a CyclicBarrier before and after each generation.
+ * The calling thread steps the first stripe itself.
+ */
+
+import java.util.concurrent.BrokenBarrierException;
+import java.util.concurrent.CyclicBarrier;
+
+class BarrierStepper
+{
+  private final BoardThread[] stripes;
+  private final CyclicBarrier start;
+  private final CyclicBarrier end;
+  private volatile boolean stopped;
+
+  /**
+   * @param engine engine to step, its rows are striped.
+   * @param size board size.
+   * @param threads stripes, including the calling thread's.
+   */
+  BarrierStepper(StripedEngine engine, int size, int threads)
+  {
+    stripes = new BoardThread[threads];
+    start = new CyclicBarrier(threads);
+    end = new CyclicBarrier(threads, engine::finishGeneration);
+    int rows = size / threads;
+    for (int i = 0; i < threads; i++)
+    {
+      int endRow = i == threads - 1 ? size : (i + 1) * rows;
+      stripes[i] = new BoardThread(i * rows, endRow, null, null, null, engine, null, null);
+    }
+    for (int i = 1; i < threads; i++)
+    {
+      BoardThread stripe = stripes[i];
+      Thread worker = new Thread(() ->
+      {
+        try
+        {
+          while (true)
+          {
+            start.await();
+            if (stopped) return;
+            stripe.advanceGeneration();
+            end.await();
+          }
+        } catch (InterruptedException | BrokenBarrierException e)
+        {
+          return;
+        }
+      });
+      worker.setDaemon(true);
+      worker.start();
+    }
+  }
+
+  /**
+   * steps one generation on all stripes, the barrier action finishes it.
+   */
+  void step() throws InterruptedException, BrokenBarrierException
+  {
+    start.await();
+    stripes[0].advanceGeneration();
+    end.await();
+  }
+
+  /**
+   * lets the workers end.
+   */
+  void shutdown() throws InterruptedException, BrokenBarrierException
+  {
+    stopped = true;
+    start.await();
+  }
+}
@@ -0,0 +1,83 @@
+package cs351;
+
+/*
+ * JMH benchmarks for the per-cell kernel: Board.getNeighborCount over the
+ * whole board, and BoardThread.advanceGeneration covering every row. Each
+ * advanceGeneration invocation copies the preset back and steps GENERATIONS
+ * generations of it, so it times the named preset and not what it decayed
+ * into. The copy is timed too, but costs less than one generation and is
+ * spread over the batch, a per invocation setup would cost more in JMH's
+ * own timestamps than a small board's generation.
+ */
+
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.concurrent.TimeUnit;
+
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Xmx4g")
+public class BoardBenchmark
+{
+  static final int GENERATIONS = 8;       // stepped per invocation after restoring the preset
+
+  @Param({"150", "1024", "4096", "8192"})
+  int size;
+
+  @Param({"RANDOM", "GOSPER", "CHECKER", "ALIVE"})
+  Workload workload;
+
+  private Board start;
+  private Board oldBoard;
+  private Board newBoard;
+  private BoardThread thread;
+
+  @Setup(Level.Trial)
+  public void setup()
+  {
+    start = workload.create(size);
+    oldBoard = new Board(size);
+    newBoard = new Board(size);
+    thread = new BoardThread(0, size, oldBoard, newBoard, null);
+    restore();
+  }
+
+  private void restore()
+  {
+    for (int row = 0; row < size; row++)
+    {
+      System.arraycopy(start.board[row], 0, oldBoard.board[row], 0, size);
+    }
+  }
+
+  @Benchmark
+  public void neighborCount(Blackhole blackhole)
+  {
+    for (int row = 0; row < size; row++)
+    {
+      for (int col = 0; col < size; col++)
+      {
+        blackhole.consume(oldBoard.getNeighborCount(row, col));
+      }
+    }
+  }
+
+  @Benchmark
+  @OperationsPerInvocation(GENERATIONS)
+  public byte[][] advanceGeneration()
+  {
+    restore();
+    for (int generation = 0; generation < GENERATIONS; generation++)
+    {
+      thread.advanceGeneration();
+      byte[][] temp = oldBoard.board;       // the barrier action's swap, there is no barrier here
+      oldBoard.board = newBoard.board;
+      newBoard.board = temp;
+    }
+    return oldBoard.board;
+  }
+}
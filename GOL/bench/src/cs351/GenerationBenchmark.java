@@ -0,0 +1,92 @@
+package cs351;
+
+/*
+ * JMH benchmark for whole generations: each engine stepped on 1..N threads
+ * across board sizes and presets, either as Life's BoardThread stripes
+ * meeting at a CyclicBarrier (BarrierStepper) or on the ForkJoinStepper.
+ * On one thread, barrier is the single threaded baseline, engine.step() on
+ * the benchmark thread, and forkjoin is a pool of one worker, its overhead
+ * over that baseline. Each invocation reloads the preset and steps
+ * GENERATIONS generations of it, so it times the named preset and not what
+ * it decayed into. The reload is timed too, but costs less than one
+ * generation and is spread over the batch, a per invocation setup would
+ * cost more in JMH's own timestamps than a small board's generation.
+ */
+
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Xmx4g")
+public class GenerationBenchmark
+{
+  static final int GENERATIONS = 8;       // stepped per invocation after reloading the preset
+
+  @Param({"classic", "bitboard"})
+  String engineName;
+
+  @Param({"1", "2", "4", "8"})
+  int threads;
+
+  @Param({"barrier", "forkjoin"})
+  String stepping;
+
+  @Param({"150", "1024", "4096", "8192"})
+  int size;
+
+  @Param({"RANDOM", "GOSPER", "CHECKER", "ALIVE"})
+  Workload workload;
+
+  private StripedEngine engine;
+  private ForkJoinStepper stepper;
+  private BarrierStepper stripes;
+  private Board start;
+
+  @Setup(Level.Trial)
+  public void setup()
+  {
+    start = workload.create(size);
+    engine = (StripedEngine) BatchRunner.createEngine(engineName, size, 0);
+    if (stepping.equals("forkjoin")) stepper = new ForkJoinStepper(threads);
+    if (threads > 1 && stepping.equals("barrier")) stripes = new BarrierStepper(engine, size, threads);
+  }
+
+  @TearDown(Level.Trial)
+  public void tearDown() throws Exception
+  {
+    if (stepper != null) stepper.shutdown();
+    if (stripes != null) stripes.shutdown();
+  }
+
+  @Benchmark
+  @OperationsPerInvocation(GENERATIONS)
+  public long generation() throws Exception
+  {
+    engine.load(start);
+    long advanced = 0;
+    for (int generation = 0; generation < GENERATIONS; generation++)
+    {
+      if (stripes != null)
+      {
+        stripes.step();
+        advanced++;
+      }
+      else if (stepper == null)
+      {
+        advanced += engine.step();
+      }
+      else
+      {
+        stepper.step(engine);
+        engine.finishGeneration();
+        advanced++;
+      }
+    }
+    return advanced;
+  }
+}
@@ -0,0 +1,32 @@
+package cs351;
+
+/*
+ * Fixed starting boards for the benchmarks, built from the same presets
+ * the GUI offers. Random boards use a fixed seed so every run steps the
+ * same cells.
+ */
+
+public enum Workload
+{
+  RANDOM, GOSPER, CHECKER, ALIVE;
+
+  static final long SEED = 351;
+
+  /**
+   * @param size board size.
+   * @return new board holding this preset.
+   */
+  Board create(int size)
+  {
+    Board board = new Board(size);
+    board.initializeAllDead();
+    switch (this)
+    {
+      case RANDOM: board.initializeRandom(SEED); break;
+      case GOSPER: board.initializeGosper(); break;
+      case CHECKER: board.initializeCheckerBoard(); break;
+      case ALIVE: board.initializeAllAlive(); break;
+    }
+    return board;
+  }
+}
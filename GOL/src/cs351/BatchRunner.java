@@ -0,0 +1,286 @@
+package cs351;
+
+/*
+ * Headless entry point for Game of Life. Loads a preset or pattern file,
+ * steps it as fast as possible with the chosen engine and thread count and
+ * reports generations/sec, cells/sec and allocation rate. No JavaFX.
+ *
+ * Usage: java -cp out cs351.BatchRunner [options]
+ *   --engine classic|bitboard|offheap|mapped|hashlife   (default classic)
+ *   --threads N       work stealing pool when N > 1 (default 1)
+ *   --size N          board is N x N (default Main.SIZE)
+ *   --generations N   (default 1000)
+ *   --warmup N        generations run before timing (default 0)
+ *   --preset random|gosper|alive|checker|cool|dead   (default random)
+ *   --pattern FILE    pattern file, placed at --at ROW COL (default 0 0)
+ *   --exponent K      hashlife advances 2^K generations per step (default 0)
+ *   --rule RULE       rulestring, see Rule (default B3/S23)
+ *   --boundary dead|torus|infinite   classic engine only (default dead)
+ *   --detect          stop stepping once the board is a still life or
+ *                     oscillator and skip ahead to --generations, classic only
+ *   --snapshot FILE   start from a saved snapshot instead (sets --size)
+ *   --save FILE       save a snapshot of the board after the run
+ *   --map FILE        file backing the mapped engine, resumed if it holds a board
+ *
+ * Pattern files can be RLE, Life 1.06 or plaintext, see PatternReader.
+ */
+
+import com.sun.management.ThreadMXBean;
+
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+
+class BatchRunner
+{
+  private String engineName = "classic";
+  private int threads = 1;
+  private int size = Main.SIZE;
+  private long generations = 1000;
+  private long warmup = 0;
+  private String preset = "random";
+  private String pattern;
+  private int patternRow = 0;
+  private int patternCol = 0;
+  private int exponent = 0;
+  private Rule rule = Rule.LIFE;
+  private Boundary boundary = Boundary.DEAD;
+  private boolean detect;
+  private long skipped;                   // generations not stepped because they repeat a cycle
+  private String snapshot;
+  private String save;
+  private String map;
+
+  public static void main(String[] args) throws IOException
+  {
+    BatchRunner runner = new BatchRunner();
+    runner.parseArgs(args);
+    runner.run();
+  }
+
+  /**
+   * reads the command line options, see the class comment.
+   * @param args command line.
+   */
+  private void parseArgs(String[] args)
+  {
+    for (int i = 0; i < args.length; i++)
+    {
+      switch (args[i])
+      {
+        case "--engine": engineName = args[++i]; break;
+        case "--threads": threads = Integer.parseInt(args[++i]); break;
+        case "--size": size = Integer.parseInt(args[++i]); break;
+        case "--generations": generations = Long.parseLong(args[++i]); break;
+        case "--warmup": warmup = Long.parseLong(args[++i]); break;
+        case "--preset": preset = args[++i]; break;
+        case "--pattern": pattern = args[++i]; break;
+        case "--at":
+          patternRow = Integer.parseInt(args[++i]);
+          patternCol = Integer.parseInt(args[++i]);
+          break;
+        case "--exponent": exponent = Integer.parseInt(args[++i]); break;
+        case "--rule": rule = Rule.parse(args[++i]); break;
+        case "--boundary": boundary = Boundary.parse(args[++i]); break;
+        case "--detect": detect = true; break;
+        case "--snapshot": snapshot = args[++i]; break;
+        case "--save": save = args[++i]; break;
+        case "--map": map = args[++i]; break;
+        default: throw new IllegalArgumentException("unknown option " + args[i]);
+      }
+    }
+  }
+
+  /**
+   * builds the starting board from the preset and/or pattern file.
+   */
+  Board createBoard() throws IOException
+  {
+    if (snapshot != null)
+    {
+      Board board = Snapshot.read(snapshot);
+      size = board.getSize();
+      return board;
+    }
+    Board board = new Board(size);
+    switch (preset)
+    {
+      case "random": board.initializeRandom(); break;
+      case "gosper": board.initializeGosper(); break;
+      case "alive": board.initializeAllAlive(); break;
+      case "checker": board.initializeCheckerBoard(); break;
+      case "cool": board.initializeSomethingCool(); break;
+      case "dead": break;
+      default: throw new IllegalArgumentException("unknown preset " + preset);
+    }
+    if (pattern != null) PatternReader.read(pattern, board, patternRow, patternCol);
+    return board;
+  }
+
+  /**
+   * @param name engine name from the command line.
+   * @param size board size.
+   * @param exponent hashlife step exponent.
+   * @return new engine.
+   */
+  static LifeEngine createEngine(String name, int size, int exponent)
+  {
+    return createEngine(name, size, exponent, Rule.LIFE, Boundary.DEAD);
+  }
+
+  /**
+   * @param name engine name from the command line.
+   * @param size board size.
+   * @param exponent hashlife step exponent.
+   * @param rule rule to run, the off heap engines only run Life.
+   * @param boundary boundary of the classic engine, the others have their own.
+   * @return new engine.
+   */
+  static LifeEngine createEngine(String name, int size, int exponent, Rule rule, Boundary boundary)
+  {
+    if (boundary != Boundary.DEAD && !name.equals("classic"))
+    {
+      throw new IllegalArgumentException("--boundary needs the classic engine");
+    }
+    switch (name)
+    {
+      case "classic": return new ClassicEngine(size, rule, boundary);
+      case "bitboard": return new BitBoardEngine(size, rule);
+      case "offheap":
+        if (!rule.isLife()) throw new IllegalArgumentException("the offheap engine only runs B3/S23");
+        return new MappedBitBoardEngine(size);
+      case "mapped": throw new IllegalArgumentException("the mapped engine needs --map FILE");
+      case "hashlife": return new HashLifeEngine(exponent, rule);
+      default: throw new IllegalArgumentException("unknown engine " + name);
+    }
+  }
+
+  private void run() throws IOException
+  {
+    LifeEngine engine;
+    Board board = null;
+    if (map != null)
+    {
+      engineName = "mapped";
+      if (!rule.isLife()) throw new IllegalArgumentException("the mapped engine only runs B3/S23");
+      if (boundary != Boundary.DEAD) throw new IllegalArgumentException("--boundary needs the classic engine");
+      if (snapshot != null) board = createBoard();    // the snapshot decides the size
+      MappedBitBoardEngine mappedEngine = new MappedBitBoardEngine(map, size);
+      engine = mappedEngine;
+      if (mappedEngine.wasResumed())
+      {
+        System.out.println("resuming " + map + " at generation " + engine.getGeneration());
+      }
+      else
+      {
+        if (board == null) board = createBoard();
+        engine.load(board);
+      }
+    }
+    else
+    {
+      board = createBoard();
+      engine = createEngine(engineName, size, exponent, rule, boundary);
+      engine.load(board);
+    }
+    ForkJoinStepper stepper = null;
+    if (threads > 1 && engine instanceof StripedEngine) stepper = new ForkJoinStepper(threads);
+    CycleDetector cycles = null;
+    if (detect)
+    {
+      if (!(engine instanceof ClassicEngine)) throw new IllegalArgumentException("--detect needs the classic engine");
+      cycles = ((ClassicEngine) engine).detectCycles();
+    }
+
+    advance(engine, stepper, warmup, cycles);
+    long skippedBefore = skipped;
+    long allocatedBefore = allocatedBytes();
+    long start = System.nanoTime();
+    long advanced = advance(engine, stepper, generations, cycles);
+    double seconds = (System.nanoTime() - start) / 1e9;
+    long allocated = allocatedBytes() - allocatedBefore;
+    if (stepper != null) stepper.shutdown();
+    if (engine instanceof MappedBitBoardEngine) ((MappedBitBoardEngine) engine).close();
+
+    long stepped = advanced - (skipped - skippedBefore);
+    System.out.println("engine=" + engineName + " rule=" + rule + " boundary="
+            + boundary.name().toLowerCase() + " threads=" + threads + " size=" + size
+            + " generations=" + advanced);
+    System.out.printf("time:            %.3f s%n", seconds);
+    System.out.printf("generations/sec: %.1f%n", stepped / seconds);
+    System.out.printf("cells/sec:       %.3e%n", stepped * (double) size * size / seconds);
+    if (allocated >= 0)
+    {
+      System.out.printf("allocation:      %.2f MB/s (%.2f MB total)%n",
+              allocated / seconds / 1e6, allocated / 1e6);
+    }
+    System.out.println("population:      " + engine.getPopulation());
+    if (cycles != null)
+    {
+      System.out.println("cycle:           " + cycles);
+      if (stepped < advanced)
+      {
+        System.out.println("skipped:         " + (advanced - stepped) + " generations, stepped " + stepped);
+      }
+    }
+
+    if (save != null)
+    {
+      if (board == null) board = new Board(size);
+      long saveStart = System.nanoTime();
+      engine.store(board);
+      Snapshot.write(save, board, engine.getGeneration() + skipped);
+      System.out.printf("saved %s in %.1f ms%n", save, (System.nanoTime() - saveStart) / 1e6);
+    }
+  }
+
+  /**
+   * steps the engine at least the given number of generations. Once a
+   * cycle is found, whole periods are skipped and only the remainder is
+   * stepped, so the board ends where it would have anyway.
+   * @param cycles detector of the engine, or null.
+   * @return generations advanced, skipped ones included, hashlife may overshoot.
+   */
+  private long advance(LifeEngine engine, ForkJoinStepper stepper, long count, CycleDetector cycles)
+  {
+    long advanced = 0;
+    long skip = 0;
+    while (advanced < count)
+    {
+      if (skip == 0 && cycles != null && cycles.isDetected())
+      {
+        long remaining = count - advanced;
+        skip = remaining - remaining % cycles.getPeriod();
+        count -= skip;
+        if (advanced >= count) break;
+      }
+      if (stepper != null)
+      {
+        StripedEngine striped = (StripedEngine) engine;
+        stepper.step(striped);
+        striped.finishGeneration();
+        advanced++;
+      }
+      else advanced += engine.step();
+    }
+    skipped += skip;
+    return advanced + skip;
+  }
+
+  /**
+   * @return bytes allocated so far by all live threads, or -1 if the JVM
+   * can't tell.
+   */
+  private static long allocatedBytes()
+  {
+    java.lang.management.ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+    if (!(bean instanceof ThreadMXBean)) return -1;
+    ThreadMXBean threadBean = (ThreadMXBean) bean;
+    if (!threadBean.isThreadAllocatedMemorySupported()) return -1;
+    long total = 0;
+    for (long bytes : threadBean.getThreadAllocatedBytes(threadBean.getAllThreadIds()))
+    {
+      if (bytes > 0) total += bytes;
+    }
+    return total;
+  }
+}
@@ -0,0 +1,248 @@
+package cs351;
+
+/*
+ * Bit-parallel Life kernel. Each row is packed into longs, 64 cells per
+ * word, and neighbor counts are summed with full adders on whole words,
+ * so one pass over a word advances 64 cells. Cells past the board edge
+ * are dead, same as Board.getNeighborCount. Ages are not kept here, the
+ * Board's byte plane is only brought up to date in store, which Life only
+ * calls when a frame is wanted.
+ */
+
+import java.util.Arrays;
+
+class BitBoardEngine implements StripedEngine
+{
+  private int size;
+  private int words;                      // longs per row
+  private long lastMask;                  // valid bits of the last word in a row
+  private long[] cells;
+  private long[] next;
+  private long generation;
+  private long storedGeneration;          // generation of the last load or store
+  private final boolean life;             // B3/S23, stepped with the fixed kernel
+  private final int birthMask;
+  private final int surviveMask;
+
+  BitBoardEngine(int size)
+  {
+    this(size, Rule.LIFE);
+  }
+
+  /**
+   * @param size board is size x size cells.
+   * @param rule an outer totalistic rule, see Rule.isOuterTotalistic.
+   */
+  BitBoardEngine(int size, Rule rule)
+  {
+    if (!rule.isOuterTotalistic()) throw new IllegalArgumentException("bitboards can't run " + rule);
+    this.birthMask = rule.getBirthMask();
+    this.surviveMask = rule.getSurviveMask();
+    this.life = rule.isLife();
+    this.size = size;
+    this.words = (size + 63) / 64;
+    this.lastMask = size % 64 == 0 ? -1L : (1L << (size % 64)) - 1;
+    this.cells = new long[size * words];
+    this.next = new long[size * words];
+  }
+
+  @Override
+  public void load(Board board)
+  {
+    Arrays.fill(cells, 0);
+    for (int row = 0; row < size; row++)
+    {
+      for (int col = 0; col < size; col++)
+      {
+        if (board.board[row][col] != 0) cells[row * words + (col >>> 6)] |= 1L << col;
+      }
+    }
+    generation = 0;
+    storedGeneration = 0;
+  }
+
+  @Override
+  public long step()
+  {
+    stepRows(0, size);
+    finishGeneration();
+    return 1;
+  }
+
+  @Override
+  public int getRows()
+  {
+    return size;
+  }
+
+  @Override
+  public void stepRows(int startRow, int endRow)
+  {
+    for (int row = startRow; row < endRow; row++)
+    {
+      int above = (row - 1) * words;
+      int here = row * words;
+      int below = (row + 1) * words;
+      boolean hasAbove = row > 0;
+      boolean hasBelow = row < size - 1;
+
+      for (int w = 0; w < words; w++)
+      {
+        long a = hasAbove ? cells[above + w] : 0;
+        long c = cells[here + w];
+        long b = hasBelow ? cells[below + w] : 0;
+
+        // carry bits in from the neighboring words
+        long aPrev = hasAbove && w > 0 ? cells[above + w - 1] : 0;
+        long cPrev = w > 0 ? cells[here + w - 1] : 0;
+        long bPrev = hasBelow && w > 0 ? cells[below + w - 1] : 0;
+        long aNext = hasAbove && w < words - 1 ? cells[above + w + 1] : 0;
+        long cNext = w < words - 1 ? cells[here + w + 1] : 0;
+        long bNext = hasBelow && w < words - 1 ? cells[below + w + 1] : 0;
+
+        long result = life ? evolve(a, aPrev, aNext, c, cPrev, cNext, b, bPrev, bNext)
+                : evolve(a, aPrev, aNext, c, cPrev, cNext, b, bPrev, bNext, birthMask, surviveMask);
+        if (w == words - 1) result &= lastMask;
+        next[here + w] = result;
+      }
+    }
+  }
+
+  /**
+   * next state of 64 cells. Takes the word above, the word itself and the
+   * word below, each with its neighboring words for the bits that carry in
+   * across word edges.
+   * @return next word, cells past the board edge still need masking.
+   */
+  static long evolve(long a, long aPrev, long aNext, long c, long cPrev, long cNext,
+                     long b, long bPrev, long bNext)
+  {
+    // bit i of "west" holds the cell at col i - 1, "east" col i + 1
+    long aw = (a << 1) | (aPrev >>> 63);
+    long ae = (a >>> 1) | (aNext << 63);
+    long cw = (c << 1) | (cPrev >>> 63);
+    long ce = (c >>> 1) | (cNext << 63);
+    long bw = (b << 1) | (bPrev >>> 63);
+    long be = (b >>> 1) | (bNext << 63);
+
+    // full adders over the row above and below, half adder over the middle
+    long aSum = aw ^ a ^ ae;
+    long aCarry = (aw & a) | (ae & (aw ^ a));
+    long bSum = bw ^ b ^ be;
+    long bCarry = (bw & b) | (be & (bw ^ b));
+    long cSum = cw ^ ce;
+    long cCarry = cw & ce;
+
+    long ones = aSum ^ bSum ^ cSum;
+    long onesCarry = (aSum & bSum) | (cSum & (aSum ^ bSum));
+
+    long twosPartial = aCarry ^ bCarry ^ cCarry;
+    long twosCarry = (aCarry & bCarry) | (cCarry & (aCarry ^ bCarry));
+    long twos = twosPartial ^ onesCarry;
+    long fours = twosCarry | (twosPartial & onesCarry);
+
+    // 2 or 3 neighbors survives, exactly 3 is born
+    return twos & ~fours & (ones | c);
+  }
+
+  /**
+   * evolve for any outer totalistic rule. The count is summed into four
+   * bit planes and the words holding each count the rule names are
+   * selected, so the work depends on the rule but not on the cells.
+   * @param birthMask bit n set if n neighbors give birth.
+   * @param surviveMask bit n set if n neighbors survive.
+   * @return next word, cells past the board edge still need masking.
+   */
+  static long evolve(long a, long aPrev, long aNext, long c, long cPrev, long cNext,
+                     long b, long bPrev, long bNext, int birthMask, int surviveMask)
+  {
+    long aw = (a << 1) | (aPrev >>> 63);
+    long ae = (a >>> 1) | (aNext << 63);
+    long cw = (c << 1) | (cPrev >>> 63);
+    long ce = (c >>> 1) | (cNext << 63);
+    long bw = (b << 1) | (bPrev >>> 63);
+    long be = (b >>> 1) | (bNext << 63);
+
+    long aSum = aw ^ a ^ ae;
+    long aCarry = (aw & a) | (ae & (aw ^ a));
+    long bSum = bw ^ b ^ be;
+    long bCarry = (bw & b) | (be & (bw ^ b));
+    long cSum = cw ^ ce;
+    long cCarry = cw & ce;
+
+    long ones = aSum ^ bSum ^ cSum;
+    long onesCarry = (aSum & bSum) | (cSum & (aSum ^ bSum));
+
+    // unlike evolve, 4 and 8 are told apart
+    long twosPartial = aCarry ^ bCarry ^ cCarry;
+    long twosCarry = (aCarry & bCarry) | (cCarry & (aCarry ^ bCarry));
+    long twos = twosPartial ^ onesCarry;
+    long foursCarry = twosPartial & onesCarry;
+    long fours = twosCarry ^ foursCarry;
+    long eights = twosCarry & foursCarry;
+
+    long born = 0;
+    long kept = 0;
+    for (int count = 0; count <= 8; count++)
+    {
+      if (((birthMask | surviveMask) >>> count & 1) == 0) continue;
+      long matches = ((count & 1) != 0 ? ones : ~ones) & ((count & 2) != 0 ? twos : ~twos)
+              & ((count & 4) != 0 ? fours : ~fours) & ((count & 8) != 0 ? eights : ~eights);
+      if ((birthMask >>> count & 1) != 0) born |= matches;
+      if ((surviveMask >>> count & 1) != 0) kept |= matches;
+    }
+    return (born & ~c) | (kept & c);
+  }
+
+  @Override
+  public void finishGeneration()
+  {
+    long[] temp = cells;
+    cells = next;
+    next = temp;
+    generation++;
+  }
+
+  @Override
+  public void store(Board board)
+  {
+    int elapsed = (int) Math.min(Rule.MAX_AGE, generation - storedGeneration);
+    storedGeneration = generation;
+    for (int row = 0; row < size; row++)
+    {
+      byte[] ages = board.board[row];
+      for (int w = 0; w < words; w++)
+      {
+        long word = cells[row * words + w];
+        int end = Math.min(size, (w + 1) * 64);
+        for (int col = w * 64; col < end; col++)
+        {
+          if ((word & (1L << col)) == 0) ages[col] = 0;
+          else if (ages[col] == 0) ages[col] = 1;
+          else ages[col] = (byte) Math.min(Rule.MAX_AGE, ages[col] + elapsed);
+        }
+      }
+    }
+  }
+
+  @Override
+  public void setCell(int row, int col, boolean alive)
+  {
+    if (alive) cells[row * words + (col >>> 6)] |= 1L << col;
+    else cells[row * words + (col >>> 6)] &= ~(1L << col);
+  }
+
+  @Override
+  public long getGeneration()
+  {
+    return generation;
+  }
+
+  @Override
+  public long getPopulation()
+  {
+    long population = 0;
+    for (long word : cells) population += Long.bitCount(word);
+    return population;
+  }
+}
@@ -13,14 +13,75 @@ class Board
   private int size;                       // size of board NxN;
   byte[][] board;
   private Random rand = new Random();
+  private Rule rule = Rule.LIFE;
+  private Boundary boundary = Boundary.DEAD;
+  private final byte[] deadRow;           // halo row past the top and bottom edges
+  private CycleDetector cycles;           // told about cells that change state, if set
 
   Board()
   {
-    this.size = Main.SIZE;
-    this.board = new byte[size][size];
+    this(Main.SIZE);
     initializeRandom();
   }
 
+  /**
+   * all dead board of a given size, used by the headless runners. The GUI
+   * always uses Main.SIZE.
+   * @param size board is size x size cells.
+   */
+  Board(int size)
+  {
+    this.size = size;
+    this.board = new byte[size][size];
+    this.deadRow = new byte[size];
+  }
+
+  /**
+   * @return number of rows (and cols) of the board.
+   */
+  int getSize()
+  {
+    return size;
+  }
+
+  /**
+   * sets the rule stepInto applies, Life (B3/S23) by default.
+   * @param rule new rule.
+   */
+  void setRule(Rule rule)
+  {
+    this.rule = rule;
+  }
+
+  Rule getRule()
+  {
+    return rule;
+  }
+
+  /**
+   * sets what stepInto sees past the edges, dead by default. INFINITE is
+   * stepped like DEAD, growing the board is up to the owner, see ClassicEngine.
+   * @param boundary new boundary.
+   */
+  void setBoundary(Boundary boundary)
+  {
+    this.boundary = boundary;
+  }
+
+  Boundary getBoundary()
+  {
+    return boundary;
+  }
+
+  /**
+   * makes stepInto report the hash changes of each region it steps.
+   * @param cycles detector, or null for none.
+   */
+  void setCycleDetector(CycleDetector cycles)
+  {
+    this.cycles = cycles;
+  }
+
   /**
    * tie fighter explosion, used in presets for controller.
    */
@@ -46,9 +107,9 @@ class Board
    */
   void initializeCheckerBoard()
   {
-    for (int i = 1; i < Main.SIZE-1; i++)
+    for (int i = 1; i < size-1; i++)
     {
-      for (int j = i; j < Main.SIZE-1; j++)
+      for (int j = i; j < size-1; j++)
       {
         if ((i+j) % 2 == 0)
         {
@@ -78,6 +139,17 @@ class Board
     }
   }
 
+  /**
+   * random board generation from a fixed seed, so the same board can be
+   * rebuilt for benchmarks and soup searches.
+   * @param seed seed for the random generator.
+   */
+  void initializeRandom(long seed)
+  {
+    rand = new Random(seed);
+    initializeRandom();
+  }
+
   /**
    * Upper left Gosper gun, shoots towards lower right.
    * Used in presets for controller.
@@ -176,7 +248,7 @@ class Board
    */
   void initializeAllDead()
   {
-    board = new byte[Main.SIZE][Main.SIZE];
+    board = new byte[size][size];
   }
 
   /**
@@ -191,31 +263,145 @@ class Board
   }
 
   /**
-   * gets the neighbor count at specified indices.
-   * @param row index
-   * @param col index
-   * @return neighbor count of cell.
+   * computes the next generation of a region of this board into next.
+   * With a TileTracker, inactive tiles are skipped: nothing around them
+   * changed last generation, so next already holds their next state.
+   * The next state of each cell comes from this board's rule table, and
+   * cells changing state are hashed into the cycle detector, if any.
+   * @param next board receiving the next generation.
+   * @param startRow first row, inclusive.
+   * @param endRow last row, exclusive.
+   * @param startCol first col, inclusive.
+   * @param endCol last col, exclusive.
+   * @param tiles active tiles, or null to step the whole region.
    */
-  int getNeighborCount(int row, int col)
+  void stepInto(Board next, int startRow, int endRow, int startCol, int endCol, TileTracker tiles)
   {
-    int count = 0;
-    for (int i = row - 1; i <= row + 1; i++)
+    byte[] table = rule.getTable();
+    int span = rule.getSpan();
+    boolean nearest = rule.isOuterTotalistic();
+    boolean torus = boundary == Boundary.TORUS;
+    boolean skip = tiles != null && !rule.birthsFromNothing();   // empty tiles change too otherwise
+    int tileSize = tiles == null ? size : TileTracker.TILE_SIZE;
+    boolean hashing = cycles != null;
+    long delta = 0;
+    for (int row = startRow; row < endRow; row++)
     {
-      if (i >= 0 && i < board.length)
+      // halo rows, the wrapped row on a torus or a dead one, so no row checks below
+      byte[] above = rowAbove(row);
+      byte[] here = board[row];
+      byte[] below = rowBelow(row);
+      byte[] nextRow = next.board[row];
+      for (int tileStart = startCol - startCol % tileSize; tileStart < endCol; tileStart += tileSize)
       {
-        for (int j = col - 1; j <= col + 1; j++)
+        if (skip && !tiles.isActive(row / tileSize, tileStart / tileSize)) continue;
+        int from = Math.max(startCol, tileStart);
+        int to = Math.min(endCol, tileStart + tileSize);
+        if (!nearest)
         {
-          if (j >= 0 && j < board[i].length)
+          for (int col = from; col < to; col++)
           {
-            if (i != row || j != col)
-            {
-              if (board[i][j] != 0) count++;
-            }
+            delta ^= stepCell(nextRow, row, col, rule.countNeighbors(board, row, col, torus), table, span, tiles);
           }
+          continue;
+        }
+
+        // the edge columns are peeled off, the interior loop has no checks
+        int first = Math.max(from, 1);
+        int last = Math.min(to, size - 1);
+        if (from == 0) delta ^= stepCell(nextRow, row, 0, countEdge(above, here, below, 0), table, span, tiles);
+        for (int col = first; col < last; col++)
+        {
+          int neighborCount = alive(above[col - 1]) + alive(above[col]) + alive(above[col + 1])
+                  + alive(here[col - 1]) + alive(here[col + 1])
+                  + alive(below[col - 1]) + alive(below[col]) + alive(below[col + 1]);
+          byte age = here[col];
+          byte nextAge = table[(age & 0xFF) * span + neighborCount];
+          nextRow[col] = nextAge;
+          if (nextAge == age) continue;
+          if (tiles != null) tiles.markChanged(row, col);
+          // aging keeps a cell alive, only other changes move the hash
+          if (hashing && (age <= 0 || nextAge <= 0))
+          {
+            delta ^= CycleDetector.key(row, col, age) ^ CycleDetector.key(row, col, nextAge);
+          }
+        }
+        if (to == size && size > 1)
+        {
+          delta ^= stepCell(nextRow, row, size - 1, countEdge(above, here, below, size - 1), table, span, tiles);
         }
       }
     }
-    return count;
+    if (hashing) cycles.add(delta);
+  }
+
+  /**
+   * @return the cell's hash change, see CycleDetector.
+   */
+  private long stepCell(byte[] nextRow, int row, int col, int neighborCount, byte[] table, int span,
+                        TileTracker tiles)
+  {
+    byte age = board[row][col];
+    byte nextAge = table[(age & 0xFF) * span + neighborCount];
+    nextRow[col] = nextAge;
+    if (nextAge == age) return 0;
+    if (tiles != null) tiles.markChanged(row, col);
+    if (cycles == null || (age > 0 && nextAge > 0)) return 0;
+    return CycleDetector.key(row, col, age) ^ CycleDetector.key(row, col, nextAge);
+  }
+
+  /**
+   * @return 1 for a live cell, 0 for dead and dying ones, without a branch.
+   */
+  private static int alive(byte cell)
+  {
+    return -cell >>> 31;
+  }
+
+  private byte[] rowAbove(int row)
+  {
+    if (row > 0) return board[row - 1];
+    return boundary == Boundary.TORUS ? board[size - 1] : deadRow;
+  }
+
+  private byte[] rowBelow(int row)
+  {
+    if (row < size - 1) return board[row + 1];
+    return boundary == Boundary.TORUS ? board[0] : deadRow;
+  }
+
+  /**
+   * neighbor count of a cell in the first or last column, where the
+   * neighbors past the edge are wrapped or dead.
+   */
+  private int countEdge(byte[] above, byte[] here, byte[] below, int col)
+  {
+    int left = col - 1;
+    int right = col + 1;
+    if (boundary == Boundary.TORUS)
+    {
+      left = Math.floorMod(left, size);
+      right = right % size;
+    }
+    return aliveAt(above, left) + aliveAt(above, col) + aliveAt(above, right)
+            + aliveAt(here, left) + aliveAt(here, right)
+            + aliveAt(below, left) + aliveAt(below, col) + aliveAt(below, right);
+  }
+
+  private static int aliveAt(byte[] row, int col)
+  {
+    return col >= 0 && col < row.length ? alive(row[col]) : 0;
+  }
+
+  /**
+   * gets the neighbor count at specified indices, honoring the boundary.
+   * @param row index
+   * @param col index
+   * @return neighbor count of cell.
+   */
+  int getNeighborCount(int row, int col)
+  {
+    return countEdge(rowAbove(row), board[row], rowBelow(row), col);
   }
 
 }
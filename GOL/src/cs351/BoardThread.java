@@ -3,11 +3,10 @@ package cs351;
 /*
  * Created by Kevin Cox on 2/3/17.
  * Custom thread, runs simulation on cell growth. Uses Life's
- * CyclicBarrier.
+ * CyclicBarrier. Started once by Life and kept for its lifetime, between
+ * generations it waits for Life to hand it the next one.
  */
 
-import javafx.beans.property.IntegerProperty;
-
 import java.util.concurrent.BrokenBarrierException;
 import java.util.concurrent.CyclicBarrier;
 
@@ -17,66 +16,70 @@ public class BoardThread extends Thread
   private CyclicBarrier barrier;
   private Board oldBoard;
   private Board newBoard;
+  private StripedEngine engine;           // if set, steps this stripe of the engine instead
+  private TileTracker tiles;              // if set, only active tiles are stepped
+  private Life life;                      // hands out generations, null if never started
   int endRow;
+  int index;                              // worker number, its slot in Life's metrics
 
   BoardThread(int start, int end, Board oldBoard, Board newBoard, CyclicBarrier barrier)
   {
+    this(start, end, oldBoard, newBoard, barrier, null, null, null);
+  }
+
+  BoardThread(int start, int end, Board oldBoard, Board newBoard, CyclicBarrier barrier,
+              StripedEngine engine, TileTracker tiles, Life life)
+  {
+    this.engine = engine;
+    this.tiles = tiles;
+    this.life = life;
     this.startRow = start;
     this.endRow = end;
     this.barrier = barrier;
     this.oldBoard = oldBoard;
     this.newBoard = newBoard;
+    setDaemon(true);
   }
 
   /**
-   * Auto generated method from thread extension. Advances generation of cells
-   * until the CyclicBarrier has been approached by thread.
+   * Auto generated method from thread extension. Steps its stripe of every
+   * generation Life hands out and waits at the CyclicBarrier, whose action
+   * swaps the boards. Returns when Life is disposed.
    */
   @Override
   public void run()
   {
-    while(!Controller.paused)
+    GenerationMetrics metrics = life.getMetrics();
+    try
     {
-      advanceGeneration();
-      try
+      while (life.awaitGeneration())
       {
+        long start = System.nanoTime();
+        advanceGeneration();
+        metrics.recordStep(index, start, System.nanoTime());
         barrier.await();
-        sleep(Controller.frames);
-      } catch (InterruptedException | BrokenBarrierException e)
-      {
-        return;
       }
+    } catch (InterruptedException | BrokenBarrierException e)
+    {
+      return;
     }
   }
 
   /**
-   * Advances generation of cells by one generation. Updates the new board based
-   * on old board values. If the GUI/Thread has been paused then the GUI will only
-   * advance by one, else it'll be continuous throughout run method.
+   * Advances this stripe of the cells by one generation, the new board is
+   * filled from the old board. Whoever waits for all the stripes swaps the
+   * boards. Inactive tiles are skipped, see Board.stepInto. A thread with
+   * no rows does nothing, Life steps engines that don't take stripes itself.
    */
   void advanceGeneration()
   {
-    int neighborCount;
-    for (int row = startRow; row < endRow; row++)
-    {
-      for (int col = 0; col < Main.SIZE; col++)
-      {
-        neighborCount = oldBoard.getNeighborCount(row, col);
-
-        if (oldBoard.board[row][col] != 0 && (neighborCount == 2 || neighborCount == 3))
-        {
-          if (oldBoard.board[row][col] <= 10) newBoard.board[row][col] = (byte) (oldBoard.board[row][col]+1);
-        }
-        else if (oldBoard.board[row][col] == 0 && neighborCount == 3) newBoard.board[row][col] = 1;
-        else newBoard.board[row][col] = 0;
-      }
-    }
-    if (!this.isAlive() || this.isInterrupted())
+    if (startRow == endRow) return;
+    if (engine != null)
     {
-      byte[][] temp = oldBoard.board;
-      oldBoard.board = newBoard.board;
-      newBoard.board = temp;
+      engine.stepRows(startRow, endRow);
+      return;
     }
+    oldBoard.stepInto(newBoard, startRow, endRow, 0, oldBoard.getSize(), tiles);
   }
 
 }
@@ -0,0 +1,22 @@
+package cs351;
+
+/*
+ * What lies past the edge of the board.
+ */
+
+enum Boundary
+{
+  DEAD,                                   // a wall of dead cells
+  TORUS,                                  // opposite edges are neighbors
+  INFINITE;                               // the board grows before anything reaches the edge
+
+  /**
+   * @param name dead, torus or infinite, any case.
+   * @return the boundary.
+   * @throws IllegalArgumentException for any other name.
+   */
+  static Boundary parse(String name)
+  {
+    return valueOf(name.toUpperCase(java.util.Locale.ROOT));
+  }
+}
@@ -6,6 +6,7 @@ package cs351;
  * handles GUI updates, and integrates with Handler class.
  */
 
+import javafx.animation.AnimationTimer;
 import javafx.beans.property.DoubleProperty;
 import javafx.beans.property.SimpleDoubleProperty;
 import javafx.scene.canvas.Canvas;
@@ -24,14 +25,31 @@ import java.util.ArrayList;
     double dx = 0;
     double dy = 0;
     private GraphicsContext gc;
+    private CellImage cellImage;
+    private DensityImage densityImage;    // drawn instead below one pixel per cell
+    private boolean cellImageStale;       // missed changes while the density image was drawn
+    private boolean densityImageStale = true;
+    private FrameBuffer frames;           // generations published by the simulation threads
+    private GenerationMetrics metrics;    // told how long each frame took to draw, if set
 
     CanvasClass(Board board, Controller controller)
     {
       this.controller = controller;
       initializeColors();
+      cellImage = new CellImage(Main.SIZE, colorArrayList);
+      densityImage = new DensityImage(Main.SIZE, colorArrayList.get(5));
+      frames = new FrameBuffer(Main.SIZE);
       this.board = board;
       widthProperty().addListener(event -> updateGUI());
       heightProperty().addListener(event -> updateGUI());
+      new AnimationTimer()
+      {
+        @Override
+        public void handle(long now)
+        {
+          drawPublished();
+        }
+      }.start();
     }
 
     /**
@@ -63,18 +81,16 @@ import java.util.ArrayList;
     }
 
     /**
-     * draws the Game of Life grid. Handles resising and scrolling.
+     * draws the Game of Life grid over the cells. Handles resising and scrolling.
      */
     private void drawGrid()
     {
+      if (myScale.get() < 5) return;
       double w = widthProperty().get();
       double h = heightProperty().get();
 
       setMouseTransparent(true);
 
-      gc = getGraphicsContext2D();
-      gc.clearRect(0, 0, w, h);
-
       gc.setStroke(Color.rgb(112,67,0));
       gc.setLineWidth(1);
 
@@ -100,27 +116,119 @@ import java.util.ArrayList;
 
     /**
      * updates the GUI after the board has been updated.
-     * Allows for shifting and zooming with cells.
+     * Allows for shifting and zooming with cells. Called on the FX thread
+     * while the simulation isn't publishing, e.g. after edits and single steps.
      */
     void updateGUI()
     {
-      drawGrid();
-//      gc = getGraphicsContext2D();
-      for (int i = 0; i < Main.SIZE; i++) //will need to be changed to grid width and height
+      frames.take();                      // drop a frame published before the edit
+      updateImage(board.board, null);
+      drawFrame();
+    }
+
+    /**
+     * hands a finished generation of the board to the FX thread. Called by
+     * the simulation instead of painting, so it never waits on the GUI.
+     * @param tiles tracker of the generation, or null if not tracked.
+     */
+    void publish(TileTracker tiles)
+    {
+      frames.publish(board.board, tiles);
+    }
+
+    /**
+     * @return true if the FX thread has taken the last published frame,
+     * see FrameBuffer.wantsFrame.
+     */
+    boolean wantsFrame()
+    {
+      return frames.wantsFrame();
+    }
+
+    /**
+     * @return the controller this canvas was made for.
+     */
+    Controller getController()
+    {
+      return controller;
+    }
+
+    /**
+     * @param metrics metrics of the Life publishing to this canvas.
+     */
+    void setMetrics(GenerationMetrics metrics)
+    {
+      this.metrics = metrics;
+    }
+
+    /**
+     * tells the frame buffer the board was edited between generations.
+     */
+    void invalidateFrames()
+    {
+      frames.invalidate();
+    }
+
+    /**
+     * draws the newest published generation, once per pulse. Generations
+     * published in between are skipped.
+     */
+    private void drawPublished()
+    {
+      byte[][] frame = frames.take();
+      if (frame == null) return;
+      long start = System.nanoTime();
+      updateImage(frame, frames.getChanged());
+      drawFrame();
+      if (metrics != null) metrics.recordRender(System.nanoTime() - start);
+    }
+
+    /**
+     * updates whichever image the zoom level shows, the cell image at one
+     * pixel per cell or more, the density image below.
+     * @param cells cell ages.
+     * @param changed tiles changed since the last update, null for all.
+     */
+    private void updateImage(byte[][] cells, boolean[] changed)
+    {
+      double scale = myScale.get();
+      if (scale >= 1)
       {
-        for (int j = 0; j < Main.SIZE; j++)
-        {
-          if (board.board[i][j] != 0)
-          {
-            if (board.board[i][j] != 0)
-            {
-              if (board.board[i][j] >= 10) gc.setFill(colorArrayList.get(9));
-              else gc.setFill(colorArrayList.get(board.board[i][j]-1)); //occasional out of bounds
-              gc.fillRect(i*myScale.get()-controller.yScrollValue, j*myScale.get()-controller.xScrollValue, myScale.get() - 1, myScale.get() - 1);
-            }
-          }
-        }
+        cellImage.update(cells, cellImageStale ? null : changed);
+        cellImageStale = false;
+        densityImageStale = true;
+      }
+      else
+      {
+        densityImage.update(cells, densityImageStale ? null : changed, densityImage.levelFor(scale));
+        densityImageStale = false;
+        cellImageStale = true;
+      }
+    }
+
+    /**
+     * clears the canvas, draws the cell image scaled to the zoom level
+     * (one pixel per cell, no smoothing) and the grid over it. Below one
+     * pixel per cell the density image is drawn and there is no grid.
+     */
+    private void drawFrame()
+    {
+      gc = getGraphicsContext2D();
+      gc.clearRect(0, 0, widthProperty().get(), heightProperty().get());
+      gc.setImageSmoothing(false);
+      double scale = myScale.get();
+      if (scale >= 1)
+      {
+        double size = Main.SIZE * scale;
+        gc.drawImage(cellImage.getImage(), -controller.yScrollValue, -controller.xScrollValue, size, size);
       }
+      else
+      {
+        // blocks hanging over the edge are whole blocks in the image
+        double size = densityImage.getImage().getWidth() * densityImage.getBlockSize() * scale;
+        gc.drawImage(densityImage.getImage(), -controller.yScrollValue, -controller.xScrollValue, size, size);
+      }
+      drawGrid();
     }
 
     /**
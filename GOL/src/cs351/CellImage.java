@@ -0,0 +1,101 @@
+package cs351;
+
+/*
+ * One pixel per cell image of the board, colored by age with the same
+ * colors as CanvasClass. Only pixels whose color changed are written, and
+ * CanvasClass draws the image scaled to the zoom level in one call
+ * instead of filling a rectangle per live cell.
+ */
+
+import javafx.scene.image.PixelWriter;
+import javafx.scene.image.WritableImage;
+import javafx.scene.paint.Color;
+
+import java.util.List;
+
+class CellImage
+{
+  private final int size;
+  private final WritableImage image;
+  private final PixelWriter writer;
+  private final byte[][] shown;           // color index currently in each pixel
+  private final int[] palette;            // argb by color index, 0 is dead
+
+  /**
+   * @param size board size, the image is size x size.
+   * @param colors the ten age colors, youngest first.
+   */
+  CellImage(int size, List<Color> colors)
+  {
+    this.size = size;
+    this.image = new WritableImage(size, size);
+    this.writer = image.getPixelWriter();
+    this.shown = new byte[size][size];
+    this.palette = new int[colors.size() + 1];
+    for (int i = 0; i < colors.size(); i++) palette[i + 1] = toArgb(colors.get(i));
+  }
+
+  WritableImage getImage()
+  {
+    return image;
+  }
+
+  /**
+   * brings every pixel up to date with the board.
+   * @param board cell ages, indexed [x][y].
+   */
+  void update(byte[][] board)
+  {
+    updateRegion(board, 0, size, 0, size);
+  }
+
+  /**
+   * brings only the pixels of changed tiles up to date.
+   * @param board cell ages, indexed [x][y].
+   * @param changed tiles changed since the last update, by
+   *                tileRow * tiles + tileCol, or null for all of them.
+   */
+  void update(byte[][] board, boolean[] changed)
+  {
+    if (changed == null)
+    {
+      update(board);
+      return;
+    }
+    int tileSize = TileTracker.TILE_SIZE;
+    int tiles = (size + tileSize - 1) / tileSize;
+    for (int tileRow = 0; tileRow < tiles; tileRow++)
+    {
+      for (int tileCol = 0; tileCol < tiles; tileCol++)
+      {
+        if (!changed[tileRow * tiles + tileCol]) continue;
+        updateRegion(board, tileRow * tileSize, Math.min(size, (tileRow + 1) * tileSize),
+                tileCol * tileSize, Math.min(size, (tileCol + 1) * tileSize));
+      }
+    }
+  }
+
+  private void updateRegion(byte[][] board, int startX, int endX, int startY, int endY)
+  {
+    int maxIndex = palette.length - 1;
+    for (int x = startX; x < endX; x++)
+    {
+      for (int y = startY; y < endY; y++)
+      {
+        int age = board[x][y];
+        byte index = (byte) (age >= maxIndex || age < 0 ? maxIndex : age);    // dying cells drawn oldest
+        if (shown[x][y] == index) continue;
+        shown[x][y] = index;
+        writer.setArgb(x, y, palette[index]);
+      }
+    }
+  }
+
+  private static int toArgb(Color color)
+  {
+    return (int) Math.round(color.getOpacity() * 255) << 24
+            | (int) Math.round(color.getRed() * 255) << 16
+            | (int) Math.round(color.getGreen() * 255) << 8
+            | (int) Math.round(color.getBlue() * 255);
+  }
+}
@@ -0,0 +1,319 @@
+package cs351;
+
+/*
+ * Headless random soup census. Each soup is a small Board filled by
+ * initializeRandom from its own seed, placed in the middle of a dead
+ * edged board and stepped until it settles into a cycle. Objects that
+ * drift to the edge (gliders and other spaceships) are counted and
+ * removed before they hit it, what is left once the board cycles is
+ * split into objects and counted too. A soup whose debris reaches the
+ * edge without being a spaceship is counted as overflowed and its
+ * objects are dropped, the edge would have changed them. Soups are spread over a
+ * ForkJoinPool, every worker tallies its own soups and the tallies are
+ * merged, so the counts don't depend on the thread count.
+ *
+ * Usage: java -cp out cs351.Census [options]
+ *   --soups N             (default 1000)
+ *   --seed S              soup i is seeded from S and i (default 0)
+ *   --threads N           (default all cores)
+ *   --soup-size N         soups are N x N (default 16)
+ *   --margin N            dead cells around the soup (default 96)
+ *   --max-generations N   soups still changing after this are unsettled (default 20000)
+ *   --rule RULE           any two state rule (default B3/S23), objects are named for Life only
+ */
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+
+class Census
+{
+  private static final int SOUPS_PER_TASK = 4;
+  private static final int SHIP_GAP = 2;  // Chebyshev distance between cells of one escaping ship
+
+  private long soups = 1000;
+  private long seed = 0;
+  private int threads = Runtime.getRuntime().availableProcessors();
+  private int soupSize = 16;
+  private int margin = 96;
+  private long maxGenerations = 20000;
+  private Rule rule = Rule.LIFE;
+  private ObjectClassifier classifier;
+
+  public static void main(String[] args)
+  {
+    Census census = new Census();
+    census.parseArgs(args);
+    census.run();
+  }
+
+  /**
+   * reads the command line options, see the class comment.
+   * @param args command line.
+   */
+  void parseArgs(String[] args)
+  {
+    for (int i = 0; i < args.length; i++)
+    {
+      switch (args[i])
+      {
+        case "--soups": soups = Long.parseLong(args[++i]); break;
+        case "--seed": seed = Long.parseLong(args[++i]); break;
+        case "--threads": threads = Integer.parseInt(args[++i]); break;
+        case "--soup-size": soupSize = Integer.parseInt(args[++i]); break;
+        case "--margin": margin = Integer.parseInt(args[++i]); break;
+        case "--max-generations": maxGenerations = Long.parseLong(args[++i]); break;
+        case "--rule": rule = Rule.parse(args[++i]); break;
+        default: throw new IllegalArgumentException("unknown option " + args[i]);
+      }
+    }
+    if (rule.getStates() != 2) throw new IllegalArgumentException("the census needs a two state rule");
+    classifier = new ObjectClassifier(rule);
+  }
+
+  private void run()
+  {
+    ForkJoinPool pool = new ForkJoinPool(threads);
+    long start = System.nanoTime();
+    Tally tally = pool.invoke(new SoupTask(0, soups));
+    double seconds = (System.nanoTime() - start) / 1e9;
+    pool.shutdown();
+
+    System.out.println("rule=" + rule + " soups=" + soups + " seed=" + seed + " threads=" + threads
+            + " soup=" + soupSize + "x" + soupSize);
+    System.out.printf("time:            %.3f s%n", seconds);
+    System.out.printf("soups/sec:       %.1f%n", soups / seconds);
+    System.out.printf("generations/sec: %.1f%n", tally.generations / seconds);
+    System.out.println("unsettled:       " + tally.unsettled);
+    System.out.println("overflowed:      " + tally.overflowed);
+    System.out.println();
+
+    List<Map.Entry<String, Long>> counts = new ArrayList<>(tally.counts.entrySet());
+    counts.sort((a, b) -> a.getValue().equals(b.getValue())
+            ? a.getKey().compareTo(b.getKey()) : Long.compare(b.getValue(), a.getValue()));
+    for (Map.Entry<String, Long> count : counts)
+    {
+      ObjectClassifier.Result result = tally.results.get(count.getKey());
+      System.out.printf("%10d  %-13s %s%n", count.getValue(), result.kind, classifier.nameOf(result));
+    }
+  }
+
+  /**
+   * @return seed of soup index, mixed so neighboring soups share nothing.
+   */
+  private long soupSeed(long index)
+  {
+    long x = seed * 0x9E3779B97F4A7C15L + index;
+    x = (x ^ (x >>> 30)) * 0xBF58476D1CE4E5B9L;
+    x = (x ^ (x >>> 27)) * 0x94D049BB133111EBL;
+    return x ^ (x >>> 31);
+  }
+
+  /**
+   * runs one soup to the end and adds its objects to the tally.
+   */
+  private void runSoup(long index, Tally tally)
+  {
+    Tally soupTally = new Tally();
+    Board soup = new Board(soupSize);
+    soup.initializeRandom(soupSeed(index));
+    int size = soupSize + 2 * margin;
+    Board start = new Board(size);
+    for (int row = 0; row < soupSize; row++)
+    {
+      System.arraycopy(soup.board[row], 0, start.board[margin + row], margin, soupSize);
+    }
+    ClassicEngine engine = new ClassicEngine(size, rule);
+    engine.load(start);
+    CycleDetector cycles = engine.detectCycles();
+
+    int reach = 2 * rule.getRadius();     // closer than this and the edge would change things
+    boolean[][] live = new boolean[size][size];
+    boolean[][] visited = new boolean[size][size];
+    long generation = 0;
+    while (!cycles.isDetected())
+    {
+      if (generation == maxGenerations)
+      {
+        tally.unsettled++;
+        tally.generations += generation;
+        return;
+      }
+      engine.step();
+      generation++;
+      if (!removeEscapees(engine, size, reach, live, visited, soupTally))
+      {
+        tally.overflowed++;
+        tally.generations += generation;
+        return;
+      }
+    }
+    tally.generations += generation;
+
+    // every cell live at any point of the cycle, so an oscillator is one piece
+    long period = cycles.getPeriod();
+    boolean[][] touched = new boolean[size][size];
+    for (long i = 0; i < period; i++)
+    {
+      byte[][] cells = engine.getCells();
+      for (int row = 0; row < size; row++)
+      {
+        for (int col = 0; col < size; col++) if (cells[row][col] > 0) touched[row][col] = true;
+      }
+      engine.step();
+    }
+    byte[][] cells = engine.getCells();
+    for (boolean[] row : visited) Arrays.fill(row, false);
+    for (int row = 0; row < size; row++)
+    {
+      for (int col = 0; col < size; col++)
+      {
+        if (!touched[row][col] || visited[row][col]) continue;
+        List<int[]> object = new ArrayList<>();
+        for (int[] cell : component(touched, visited, row, col, 1))
+        {
+          if (cells[cell[0]][cell[1]] > 0) object.add(cell);
+        }
+        soupTally.add(classifier.classify(object));
+      }
+    }
+    tally.merge(soupTally);
+  }
+
+  /**
+   * counts and deletes the spaceships with a cell within reach of the edge.
+   * Cells up to SHIP_GAP apart are one ship, some phases of the Life
+   * spaceships (the LWSS, MWSS and HWSS) are two 8-connected pieces. The
+   * live mask is only filled once a pass finds a live edge cell, and the
+   * ships are cleared together once the pass is done.
+   * @param live scratch, size x size.
+   * @param visited scratch, size x size.
+   * @return false if something else got there.
+   */
+  boolean removeEscapees(ClassicEngine engine, int size, int reach, boolean[][] live,
+                                 boolean[][] visited, Tally tally)
+  {
+    byte[][] cells = engine.getCells();
+    boolean masked = false;
+    List<int[]> removed = new ArrayList<>();
+    for (int row = 0; row < size; row++)
+    {
+      boolean edgeRow = row < reach || row >= size - reach;
+      for (int col = 0; col < size; col++)
+      {
+        if (!edgeRow && col == reach) col = size - reach;     // only the edge columns
+        if (cells[row][col] <= 0) continue;
+        if (!masked)
+        {
+          for (int i = 0; i < size; i++)
+          {
+            for (int j = 0; j < size; j++) live[i][j] = cells[i][j] > 0;
+            Arrays.fill(visited[i], false);
+          }
+          masked = true;
+        }
+        else if (visited[row][col]) continue;           // part of a ship already found
+        List<int[]> object = component(live, visited, row, col, SHIP_GAP);
+        ObjectClassifier.Result result = classifier.classify(object);
+        if (result.kind != ObjectClassifier.Kind.SPACESHIP) return false;
+        tally.add(result);
+        removed.addAll(object);
+      }
+    }
+    if (!removed.isEmpty()) engine.clearCells(removed);
+    return true;
+  }
+
+  /**
+   * flood fills the cells of mask connected to (row, col), 8-connected if
+   * gap is 1, or with up to gap - 1 dead cells between neighbors.
+   * @return the cells, all marked in visited.
+   */
+  private static List<int[]> component(boolean[][] mask, boolean[][] visited, int row, int col, int gap)
+  {
+    List<int[]> cells = new ArrayList<>();
+    ArrayDeque<int[]> queue = new ArrayDeque<>();
+    visited[row][col] = true;
+    queue.add(new int[] {row, col});
+    while (!queue.isEmpty())
+    {
+      int[] cell = queue.poll();
+      cells.add(cell);
+      for (int i = Math.max(0, cell[0] - gap); i <= Math.min(mask.length - 1, cell[0] + gap); i++)
+      {
+        for (int j = Math.max(0, cell[1] - gap); j <= Math.min(mask.length - 1, cell[1] + gap); j++)
+        {
+          if (!mask[i][j] || visited[i][j]) continue;
+          visited[i][j] = true;
+          queue.add(new int[] {i, j});
+        }
+      }
+    }
+    return cells;
+  }
+
+  /**
+   * object counts of some soups, merged up the task tree.
+   */
+  static class Tally
+  {
+    private final HashMap<String, Long> counts = new HashMap<>();
+    private final HashMap<String, ObjectClassifier.Result> results = new HashMap<>();
+    private long generations;
+    private long unsettled;
+    private long overflowed;
+
+    void add(ObjectClassifier.Result result)
+    {
+      counts.merge(result.key, 1L, Long::sum);
+      results.putIfAbsent(result.key, result);
+    }
+
+    Tally merge(Tally other)
+    {
+      other.counts.forEach((key, count) -> counts.merge(key, count, Long::sum));
+      other.results.forEach(results::putIfAbsent);
+      generations += other.generations;
+      unsettled += other.unsettled;
+      overflowed += other.overflowed;
+      return this;
+    }
+  }
+
+  /**
+   * runs soups [start, end), halving the range until SOUPS_PER_TASK or less.
+   */
+  private class SoupTask extends RecursiveTask<Tally>
+  {
+    private static final long serialVersionUID = 1L;
+
+    private final long start, end;
+
+    SoupTask(long start, long end)
+    {
+      this.start = start;
+      this.end = end;
+    }
+
+    @Override
+    protected Tally compute()
+    {
+      if (end - start <= SOUPS_PER_TASK)
+      {
+        Tally tally = new Tally();
+        for (long index = start; index < end; index++) runSoup(index, tally);
+        return tally;
+      }
+      long mid = start + (end - start) / 2;
+      SoupTask left = new SoupTask(start, mid);
+      left.fork();
+      Tally right = new SoupTask(mid, end).compute();
+      return left.join().merge(right);
+    }
+  }
+}
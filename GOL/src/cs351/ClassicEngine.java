@@ -0,0 +1,235 @@
+package cs351;
+
+/*
+ * The byte-per-cell boards and TileTracker that Life steps with BoardThreads,
+ * packaged as an engine so code without a Life (headless runners) can
+ * step them the same way as the other engines.
+ *
+ * With an INFINITE boundary the boards grow on every side whenever a live
+ * cell comes within reach of the edge, so the kernel still sees a dead
+ * edge but nothing ever hits it. The Board passed to load and store is
+ * then a window at the original top left corner.
+ */
+
+import java.util.List;
+
+class ClassicEngine implements StripedEngine
+{
+  private Board oldBoard;
+  private Board newBoard;
+  private TileTracker tiles;
+  private long generation;
+  private final Rule rule;
+  private final Boundary boundary;
+  private int originRow;                  // where the window's top left cell is in the boards
+  private int originCol;
+  private CycleDetector cycles;
+
+  ClassicEngine(int size)
+  {
+    this(size, Rule.LIFE);
+  }
+
+  /**
+   * @param size board is size x size cells.
+   * @param rule any rule, the byte boards run them all.
+   */
+  ClassicEngine(int size, Rule rule)
+  {
+    this(size, rule, Boundary.DEAD);
+  }
+
+  /**
+   * @param size board is size x size cells, the starting size if infinite.
+   * @param rule any rule, the byte boards run them all.
+   * @param boundary what lies past the edges.
+   */
+  ClassicEngine(int size, Rule rule, Boundary boundary)
+  {
+    this.rule = rule;
+    this.boundary = boundary;
+    createBoards(size);
+  }
+
+  private void createBoards(int size)
+  {
+    this.oldBoard = new Board(size);
+    this.oldBoard.setRule(rule);
+    this.oldBoard.setBoundary(boundary);
+    this.oldBoard.setCycleDetector(cycles);
+    this.newBoard = new Board(size);
+    this.tiles = new TileTracker(size);
+    this.tiles.setWrap(boundary == Boundary.TORUS);
+  }
+
+  @Override
+  public void load(Board board)
+  {
+    if (oldBoard.getSize() != board.getSize()) createBoards(board.getSize());
+    originRow = 0;
+    originCol = 0;
+    for (int row = 0; row < board.getSize(); row++)
+    {
+      System.arraycopy(board.board[row], 0, oldBoard.board[row], 0, board.getSize());
+    }
+    tiles.markAll();
+    generation = 0;
+    growIfNeeded();
+    if (cycles != null) cycles.reset(oldBoard.board, generation);
+  }
+
+  @Override
+  public long step()
+  {
+    stepRows(0, oldBoard.getSize());
+    finishGeneration();
+    return 1;
+  }
+
+  /**
+   * @return rows of the boards, more than the window once an infinite board grew.
+   */
+  @Override
+  public int getRows()
+  {
+    return oldBoard.getSize();
+  }
+
+  @Override
+  public void stepRows(int startRow, int endRow)
+  {
+    oldBoard.stepInto(newBoard, startRow, endRow, 0, oldBoard.getSize(), tiles);
+  }
+
+  @Override
+  public void finishGeneration()
+  {
+    byte[][] temp = oldBoard.board;
+    oldBoard.board = newBoard.board;
+    newBoard.board = temp;
+    tiles.finishGeneration();
+    generation++;
+    boolean grew = growIfNeeded();
+    if (cycles == null) return;
+    if (grew) cycles.reset(oldBoard.board, generation);       // every cell moved
+    else cycles.finishGeneration(generation);
+  }
+
+  /**
+   * starts hashing generations, see CycleDetector. Once the board stops
+   * growing, cycles of an infinite board are found too, but the entry
+   * generation may be later than the real one.
+   * @return the detector, reset to the current generation.
+   */
+  CycleDetector detectCycles()
+  {
+    cycles = new CycleDetector();
+    oldBoard.setCycleDetector(cycles);
+    cycles.reset(oldBoard.board, generation);
+    return cycles;
+  }
+
+  /**
+   * @return the current generation's cells, the whole board, which is bigger
+   * than the window once an infinite board grew. Not a copy, edit through setCell
+   * or clearCells.
+   */
+  byte[][] getCells()
+  {
+    return oldBoard.board;
+  }
+
+  /**
+   * copies the ages as they are, the classic boards age cells every generation.
+   */
+  @Override
+  public void store(Board board)
+  {
+    int cols = Math.min(board.getSize(), oldBoard.getSize() - originCol);
+    for (int row = 0; row < board.getSize() && originRow + row < oldBoard.getSize(); row++)
+    {
+      System.arraycopy(oldBoard.board[originRow + row], originCol, board.board[row], 0, cols);
+    }
+  }
+
+  @Override
+  public void setCell(int row, int col, boolean alive)
+  {
+    oldBoard.board[originRow + row][originCol + col] = (byte) (alive ? 1 : 0);
+    tiles.markCell(originRow + row, originCol + col);
+    growIfNeeded();
+    if (cycles != null) cycles.reset(oldBoard.board, generation);
+  }
+
+  /**
+   * kills cells in bulk, the cycle hash is started over once for all of
+   * them rather than once a cell as setCell does.
+   * @param cells {row, col} of each, in the coordinates of getCells.
+   */
+  void clearCells(List<int[]> cells)
+  {
+    for (int[] cell : cells)
+    {
+      oldBoard.board[cell[0]][cell[1]] = 0;
+      tiles.markCell(cell[0], cell[1]);
+    }
+    if (cycles != null) cycles.reset(oldBoard.board, generation);
+  }
+
+  @Override
+  public long getGeneration()
+  {
+    return generation;
+  }
+
+  @Override
+  public long getPopulation()
+  {
+    long population = 0;
+    for (byte[] row : oldBoard.board)
+    {
+      for (byte cell : row) if (cell > 0) population++;
+    }
+    return population;
+  }
+
+  /**
+   * grows an infinite board by half its size (at least a tile) on every
+   * side if a live cell is within the rule's radius of an edge. Only
+   * called between generations.
+   * @return true if the board grew.
+   */
+  private boolean growIfNeeded()
+  {
+    if (boundary != Boundary.INFINITE || !liveNearEdge()) return false;
+    int size = oldBoard.getSize();
+    int pad = Math.max(TileTracker.TILE_SIZE, size / 2);
+    byte[][] cells = oldBoard.board;
+    createBoards(size + 2 * pad);
+    for (int row = 0; row < size; row++)
+    {
+      System.arraycopy(cells[row], 0, oldBoard.board[pad + row], pad, size);
+    }
+    originRow += pad;
+    originCol += pad;
+    return true;
+  }
+
+  private boolean liveNearEdge()
+  {
+    int size = oldBoard.getSize();
+    int reach = Math.min(size, rule.getRadius() + 1);
+    for (int row = 0; row < size; row++)
+    {
+      byte[] cells = oldBoard.board[row];
+      boolean edgeRow = row < reach || row >= size - reach;
+      for (int col = 0; col < size; col++)
+      {
+        if (cells[col] > 0) return true;
+        // away from the top and bottom only the edge columns matter
+        if (!edgeRow && col == reach - 1) col = Math.max(col, size - reach - 1);
+      }
+    }
+    return false;
+  }
+}
@@ -15,18 +15,29 @@ import javafx.collections.ObservableList;
 import javafx.event.ActionEvent;
 import javafx.fxml.FXML;
 import javafx.scene.control.Button;
+import javafx.scene.control.CheckBox;
 import javafx.scene.control.ComboBox;
+import javafx.scene.control.Label;
 import javafx.scene.control.ScrollBar;
 import javafx.scene.control.Slider;
+import javafx.scene.control.TextField;
 import javafx.scene.input.MouseEvent;
 import javafx.scene.input.ScrollEvent;
 import javafx.scene.layout.BorderPane;
 import javafx.scene.layout.Pane;
+import javafx.stage.FileChooser;
+
+import java.io.File;
+import java.io.IOException;
 
 public class Controller
 {
   @FXML ComboBox<Integer> threadCombo = new ComboBox<>();
   @FXML ComboBox<String> presetCombo = new ComboBox<>();
+  @FXML ComboBox<String> engineCombo = new ComboBox<>();
+  @FXML ComboBox<String> boundaryCombo = new ComboBox<>();
+  @FXML CheckBox workStealingCheck = new CheckBox();
+  @FXML TextField ruleField = new TextField();
   @FXML BorderPane pane = new BorderPane();
   @FXML ScrollBar horizontalScrollBar;
   @FXML ScrollBar verticalScrollBar;
@@ -35,7 +46,9 @@ public class Controller
   @FXML private Button startButton;
   @FXML private Button resetButton;
   @FXML private Button loadButton;
+  @FXML private Button stampButton;
   @FXML private Slider slider = new Slider();
+  @FXML private Label cycleLabel;
 
   static int frames = 300;
   private Pane canvasPane = new Pane();
@@ -45,6 +58,7 @@ public class Controller
   static volatile boolean paused = true;
   private Life life;
   private int storedPreset = 1;
+  private Stamp stamp;                    // stamped where the canvas is clicked, null toggles a cell
 
   double yScrollValue = 0;
   double xScrollValue = 0;
@@ -55,6 +69,10 @@ public class Controller
           6, 7, 8);
   private ObservableList<String> presetList = FXCollections.observableArrayList("1: All Dead", "2: Random",
           "3: Glider Gun", "4: All Alive but Edges", "5: UL Checkerboard", "6: Something Cool");
+  private ObservableList<String> engineList = FXCollections.observableArrayList("1: Classic", "2: HashLife",
+          "3: HashLife 64 gens/step", "4: Bitboard");
+  private ObservableList<String> boundaryList = FXCollections.observableArrayList("Dead edge", "Torus",
+          "Infinite");
 
   /**
    * Gets current selection of threads and preset, updates game board
@@ -66,12 +84,28 @@ public class Controller
   {
     if (!threadCombo.getSelectionModel().isEmpty() && !presetCombo.getSelectionModel().isEmpty())
     {
+      Rule rule;
+      try
+      {
+        rule = ruleField.getText().trim().isEmpty() ? Rule.LIFE : Rule.parse(ruleField.getText());
+      } catch (IllegalArgumentException e)
+      {
+        System.out.println(e.getMessage());
+        return;
+      }
       paused = true;
+      if (life != null) life.dispose();
       int numThreads = threadCombo.getSelectionModel().getSelectedIndex()+1;
       board.board = new byte[Main.SIZE][Main.SIZE];
       handlePreset();
+      board.setRule(rule);
+      board.setBoundary(Boundary.values()[boundaryCombo.getSelectionModel().getSelectedIndex()]);
       storedPreset = presetCombo.getSelectionModel().getSelectedIndex();
-      life = new Life(board,numThreads, canvas);
+      LifeEngine engine = createEngine(rule, board.getBoundary());
+      // a growing board changes its row count, only the work stealing stepper follows that
+      boolean workStealing = workStealingCheck.isSelected() || engine instanceof ClassicEngine;
+      life = new Life(board, numThreads, canvas, engine, workStealing);
+      cycleLabel.setText("");
       canvas.updateGUI();
       pausedButton.setText("pause");
       pausedButton.setDisable(true);
@@ -103,6 +137,43 @@ public class Controller
     }
   }
 
+  /**
+   * creates the engine selected in the engine combo box. Falls back to the
+   * classic BoardThreads if the engine can't run the rule or boundary.
+   * HashLife is always infinite, Bitboard always has dead edges.
+   * @param rule rule to run.
+   * @param boundary selected boundary.
+   * @return the engine, or null for the classic BoardThreads.
+   */
+  private LifeEngine createEngine(Rule rule, Boundary boundary)
+  {
+    try
+    {
+      int selected = engineCombo.getSelectionModel().getSelectedIndex();
+      if (boundary == Boundary.TORUS && selected != 0)
+      {
+        throw new IllegalArgumentException(engineCombo.getValue() + " can't wrap");
+      }
+      if (boundary == Boundary.INFINITE && selected == 3)
+      {
+        throw new IllegalArgumentException("Bitboard can't grow");
+      }
+      switch (selected)
+      {
+        case 1: return new HashLifeEngine(0, rule);
+        case 2: return new HashLifeEngine(6, rule);
+        case 3: return new BitBoardEngine(Main.SIZE, rule);
+        default:
+          if (boundary == Boundary.INFINITE) return new ClassicEngine(Main.SIZE, rule, boundary);
+          return null;
+      }
+    } catch (IllegalArgumentException e)
+    {
+      System.out.println(e.getMessage() + ", using Classic");
+      return boundary == Boundary.INFINITE ? new ClassicEngine(Main.SIZE, rule, boundary) : null;
+    }
+  }
+
   /**
    * resets GUI/game board. Retains previously selected preset and number
    * of threads the user selected.
@@ -112,8 +183,11 @@ public class Controller
   {
     System.out.println("resetting...");
     presetCombo.getSelectionModel().select(storedPreset);
+    life.pauseLife();
     board.board = new byte[Main.SIZE][Main.SIZE];
     handlePreset();
+    life.reload();
+    cycleLabel.setText("");
     canvas.updateGUI();
     startButton.setDisable(false);
     paused = true;
@@ -146,6 +220,32 @@ public class Controller
     canvas.updateGUI();
   }
 
+  /**
+   * picks a pattern file to stamp with clicks on the canvas. Cancelling
+   * goes back to toggling single cells.
+   */
+  @FXML
+  private void pickStamp()
+  {
+    FileChooser chooser = new FileChooser();
+    chooser.setTitle("Stamp Pattern");
+    chooser.getExtensionFilters().addAll(
+            new FileChooser.ExtensionFilter("Patterns", "*.rle", "*.lif", "*.life", "*.cells"),
+            new FileChooser.ExtensionFilter("All files", "*.*"));
+    File file = chooser.showOpenDialog(stampButton.getScene().getWindow());
+    stamp = null;
+    stampButton.setText("Stamp...");
+    if (file == null) return;
+    try
+    {
+      stamp = Stamp.read(file.getPath());
+      stampButton.setText(stamp.getName());
+    } catch (IOException e)
+    {
+      System.out.println(e.getMessage());
+    }
+  }
+
   /**
    * Pauses or unpauses current process in GUI/threads.
    */
@@ -156,7 +256,26 @@ public class Controller
     paused = !paused;
     toggleButtons();
     startButton.setDisable(true);
-    if (!paused) life.unPauseLife();
+    if (paused) life.pauseLife();
+    else life.unPauseLife();
+  }
+
+  /**
+   * shows a still life or oscillator found by Life, which has already
+   * paused. Called on the FX thread.
+   * @param source Life that found it, ignored if it was since replaced.
+   * @param period period, 1 for a still life.
+   * @param entry first generation of the cycle.
+   */
+  void showCycle(Life source, long period, long entry)
+  {
+    if (source != life) return;
+    if (period == 1) cycleLabel.setText("Still life from gen " + entry);
+    else cycleLabel.setText("Period " + period + " from gen " + entry);
+    paused = true;
+    toggleButtons();
+    pausedButton.setDisable(false);
+    startButton.setDisable(true);
   }
 
   /**
@@ -190,8 +309,12 @@ public class Controller
   {
     threadCombo.setItems(threadsList);
     presetCombo.setItems(presetList);
+    engineCombo.setItems(engineList);
+    boundaryCombo.setItems(boundaryList);
     presetCombo.getSelectionModel().select(1);
     threadCombo.getSelectionModel().select(0);
+    engineCombo.getSelectionModel().select(0);
+    boundaryCombo.getSelectionModel().select(0);
   }
 
   /**
@@ -206,16 +329,15 @@ public class Controller
     canvasPane.addEventFilter(MouseEvent.ANY, handler.getOnMouseEventHandler());
     canvasPane.addEventFilter(MouseEvent.MOUSE_PRESSED, event ->
     {
-     if (paused)
-     {
-       int cellX = (int) (pixelX/canvas.getScale());
-       int cellY = (int)(pixelY/canvas.getScale());
+     int cellX = (int) (pixelX/canvas.getScale());
+     int cellY = (int)(pixelY/canvas.getScale());
 
-       if (cellX >= Main.SIZE) cellX = Main.SIZE-1;
-       if (cellY >= Main.SIZE) cellY = Main.SIZE-1;
-       board.toggleLife(cellX, cellY);
-       canvas.updateGUI();
-     }
+     if (cellX >= Main.SIZE) cellX = Main.SIZE-1;
+     if (cellY >= Main.SIZE) cellY = Main.SIZE-1;
+     // while running the edit lands between generations and shows with the next one
+     if (stamp != null) life.stamp(stamp, cellX, cellY);
+     else life.toggleLife(cellX, cellY);
+     if (paused) canvas.updateGUI();
     });
     canvasPane.getChildren().add(canvas);
     pane.setCenter(canvasPane);
@@ -0,0 +1,130 @@
+package cs351;
+
+/*
+ * Spots still lifes and oscillators. The board's hash is the XOR of a
+ * key per live (or dying) cell, so a generation updates it from the
+ * cells that changed state, which stepInto reports as it goes. Every
+ * generation's hash is remembered with its generation, the first repeat
+ * gives the period and the generation the cycle was entered. Ages are
+ * ignored, a still life keeps aging but is still still.
+ */
+
+import java.util.HashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+class CycleDetector
+{
+  private static final int MAX_HISTORY = 1 << 20;   // hashes remembered before starting over
+
+  private final AtomicLong pending = new AtomicLong();   // changes of the generation being stepped
+  private final HashMap<Long, Long> seen = new HashMap<>();
+  private long hash;
+  private long period;                    // 0 until a cycle is found
+  private long entry;
+
+  /**
+   * @param row cell row
+   * @param col cell col
+   * @param cell cell byte, see Rule.
+   * @return the cell's contribution to the board hash, 0 if dead.
+   */
+  static long key(int row, int col, byte cell)
+  {
+    if (cell == 0) return 0;
+    long state = cell > 0 ? 1 : 1 - cell;
+    long x = ((long) row << 32 | (col & 0xFFFFFFFFL)) * 0x9E3779B97F4A7C15L + state;
+    // splitmix64 finalizer
+    x = (x ^ (x >>> 30)) * 0xBF58476D1CE4E5B9L;
+    x = (x ^ (x >>> 27)) * 0x94D049BB133111EBL;
+    return x ^ (x >>> 31);
+  }
+
+  /**
+   * adds the XOR of key changes from part of a generation. Stripes and
+   * tiles call this concurrently, once each.
+   * @param delta XOR of old and new keys of the changed cells.
+   */
+  void add(long delta)
+  {
+    if (delta != 0) pending.accumulateAndGet(delta, (a, b) -> a ^ b);
+  }
+
+  /**
+   * starts over from a board, e.g. after a load or an edit.
+   * @param board cells, indexed [row][col].
+   * @param generation generation the board is at.
+   */
+  void reset(byte[][] board, long generation)
+  {
+    hash = 0;
+    for (int row = 0; row < board.length; row++)
+    {
+      for (int col = 0; col < board[row].length; col++) hash ^= key(row, col, board[row][col]);
+    }
+    pending.set(0);
+    seen.clear();
+    seen.put(hash, generation);
+    period = 0;
+  }
+
+  /**
+   * folds the finished generation's changes into the hash and looks it up.
+   * Called between generations.
+   * @param generation generation just finished.
+   * @return true the first time a cycle is found.
+   */
+  boolean finishGeneration(long generation)
+  {
+    hash ^= pending.getAndSet(0);
+    if (period != 0) return false;
+    Long first = seen.putIfAbsent(hash, generation);
+    if (first == null)
+    {
+      if (seen.size() > MAX_HISTORY) seen.clear();
+      return false;
+    }
+    period = generation - first;
+    entry = first;
+    return true;
+  }
+
+  /**
+   * @return true once a cycle was found.
+   */
+  boolean isDetected()
+  {
+    return period != 0;
+  }
+
+  /**
+   * @return period of the cycle, 1 for a still life, 0 if none found yet.
+   */
+  long getPeriod()
+  {
+    return period;
+  }
+
+  /**
+   * @return first generation of the cycle.
+   */
+  long getEntryGeneration()
+  {
+    return entry;
+  }
+
+  /**
+   * @return hash of the current generation.
+   */
+  long getHash()
+  {
+    return hash;
+  }
+
+  @Override
+  public String toString()
+  {
+    if (period == 0) return "no cycle";
+    if (period == 1) return "still life from generation " + entry;
+    return "period " + period + " oscillator from generation " + entry;
+  }
+}
@@ -0,0 +1,159 @@
+package cs351;
+
+/*
+ * Level of detail image for zoom levels below one pixel per cell. Keeps
+ * a pyramid of live cell counts, level k counting each 2^k x 2^k block,
+ * and draws one level as an image with one pixel per block, shaded by
+ * how full the block is, rows as image x like CellImage. Counts are only
+ * recomputed for the tiles that changed and the blocks above them, and
+ * the image drawn is about as big as the board is on screen, so a frame
+ * costs screen pixels, not cells.
+ */
+
+import javafx.scene.image.PixelWriter;
+import javafx.scene.image.WritableImage;
+import javafx.scene.paint.Color;
+
+class DensityImage
+{
+  private static final int TILE_LEVEL = 5;              // TILE_SIZE is 2^5, tiles hold whole blocks
+  private static final int MIN_ALPHA = 40;              // a single live cell still shows
+
+  private final int size;
+  private final int levels;
+  private final int[] sides;              // blocks per side, by level
+  private final int[][] counts;           // live cells per block, by level, [row * side + col]
+  private final WritableImage[] images;   // by level, made when the level is first shown
+  private final int rgb;                  // block color, shaded by alpha
+  private int shownLevel;
+
+  /**
+   * @param size board size.
+   * @param color color of a full block.
+   */
+  DensityImage(int size, Color color)
+  {
+    this.size = size;
+    int levels = 1;
+    while ((size - 1 >> levels) > 0) levels++;
+    this.levels = levels;
+    sides = new int[levels + 1];
+    counts = new int[levels + 1][];
+    images = new WritableImage[levels + 1];
+    for (int level = 1; level <= levels; level++)
+    {
+      sides[level] = (size + (1 << level) - 1) >> level;
+      counts[level] = new int[sides[level] * sides[level]];
+    }
+    rgb = (int) Math.round(color.getRed() * 255) << 16 | (int) Math.round(color.getGreen() * 255) << 8
+            | (int) Math.round(color.getBlue() * 255);
+  }
+
+  /**
+   * @param scale pixels per cell, below 1.
+   * @return the level whose blocks are about one pixel at that scale.
+   */
+  int levelFor(double scale)
+  {
+    int level = (int) Math.floor(Math.log(1 / scale) / Math.log(2));
+    return Math.max(1, Math.min(levels, level));
+  }
+
+  /**
+   * @return image of the level last updated, one pixel per block.
+   */
+  WritableImage getImage()
+  {
+    return images[shownLevel];
+  }
+
+  /**
+   * @return cells per side of a block of the level last updated.
+   */
+  int getBlockSize()
+  {
+    return 1 << shownLevel;
+  }
+
+  /**
+   * brings the counts and the level's image up to date with the board.
+   * @param board cell ages, indexed [x][y].
+   * @param changed tiles changed since the last update, by
+   *                tileRow * tiles + tileCol, or null for all of them.
+   * @param level level to draw.
+   */
+  void update(byte[][] board, boolean[] changed, int level)
+  {
+    int tileSize = TileTracker.TILE_SIZE;
+    int tiles = (size + tileSize - 1) / tileSize;
+    boolean redraw = changed == null || level != shownLevel || images[level] == null;
+    if (images[level] == null) images[level] = new WritableImage(sides[level], sides[level]);
+    shownLevel = level;
+    PixelWriter writer = images[level].getPixelWriter();
+    for (int t = 0; t < tiles * tiles; t++)
+    {
+      if (changed != null && !changed[t]) continue;
+      int startRow = (t / tiles) * tileSize;
+      int startCol = (t % tiles) * tileSize;
+      for (int k = 1; k <= levels; k++)
+      {
+        // blocks of the tile at the levels below TILE_LEVEL, the one block holding it above
+        int firstRow = startRow >> k;
+        int firstCol = startCol >> k;
+        int lastRow = k <= TILE_LEVEL ? Math.min(sides[k], (startRow + tileSize) >> k) : firstRow + 1;
+        int lastCol = k <= TILE_LEVEL ? Math.min(sides[k], (startCol + tileSize) >> k) : firstCol + 1;
+        lastRow = Math.max(lastRow, firstRow + 1);
+        lastCol = Math.max(lastCol, firstCol + 1);
+        for (int row = firstRow; row < lastRow; row++)
+        {
+          for (int col = firstCol; col < lastCol; col++)
+          {
+            counts[k][row * sides[k] + col] = count(board, k, row, col);
+            if (k == level && !redraw) writer.setArgb(row, col, shade(k, row, col));
+          }
+        }
+      }
+    }
+    if (!redraw) return;
+    for (int row = 0; row < sides[level]; row++)
+    {
+      for (int col = 0; col < sides[level]; col++) writer.setArgb(row, col, shade(level, row, col));
+    }
+  }
+
+  /**
+   * live cells of a block, from the board for level 1 and from the four
+   * blocks below it otherwise. Blocks hanging over the board's edge only
+   * count what is on it.
+   */
+  private int count(byte[][] board, int level, int row, int col)
+  {
+    int sum = 0;
+    if (level == 1)
+    {
+      for (int x = 2 * row; x < Math.min(size, 2 * row + 2); x++)
+      {
+        for (int y = 2 * col; y < Math.min(size, 2 * col + 2); y++) if (board[x][y] > 0) sum++;
+      }
+      return sum;
+    }
+    int side = sides[level - 1];
+    int[] below = counts[level - 1];
+    for (int x = 2 * row; x < Math.min(side, 2 * row + 2); x++)
+    {
+      for (int y = 2 * col; y < Math.min(side, 2 * col + 2); y++) sum += below[x * side + y];
+    }
+    return sum;
+  }
+
+  /**
+   * argb of a block, the color with alpha by the share of live cells.
+   */
+  private int shade(int level, int row, int col)
+  {
+    int live = counts[level][row * sides[level] + col];
+    if (live == 0) return 0;
+    int alpha = Math.max(MIN_ALPHA, (int) (255L * live >> 2 * level));
+    return alpha << 24 | rgb;
+  }
+}
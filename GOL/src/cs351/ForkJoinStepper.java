@@ -0,0 +1,143 @@
+package cs351;
+
+/*
+ * Work stealing alternative to Life's row stripes. A generation is split
+ * recursively into tiles (or row ranges for striped engines) and run on a
+ * ForkJoinPool, so idle workers steal from whichever part of the board is
+ * busy. The pool lives as long as the Life object, and invoke returning is
+ * the barrier, so nothing is re-created on pause and unpause.
+ */
+
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+class ForkJoinStepper
+{
+  private static final int MIN_ROWS = 16;       // smallest row range handed to a task
+  private final ForkJoinPool pool;
+
+  ForkJoinStepper(int threads)
+  {
+    this.pool = new ForkJoinPool(threads);
+  }
+
+  /**
+   * computes the next generation of oldBoard into newBoard, tile by tile.
+   * The caller swaps the boards afterwards.
+   * @param oldBoard current generation.
+   * @param newBoard receives the next generation.
+   * @param tiles active tiles, rectangles without any are skipped without
+   *              forking, see TileTracker.countActive.
+   */
+  void step(Board oldBoard, Board newBoard, TileTracker tiles)
+  {
+    // counted here first, so the pool's workers only read the counts
+    int count = tiles.getTiles();
+    if (tiles.countActive(0, count, 0, count) == 0 && !oldBoard.getRule().birthsFromNothing()) return;
+    pool.invoke(new TileTask(oldBoard, newBoard, tiles, 0, count, 0, count));
+  }
+
+  /**
+   * computes the next generation of a striped engine by row ranges. The
+   * caller finishes the generation afterwards.
+   * @param engine engine to step.
+   */
+  void step(StripedEngine engine)
+  {
+    pool.invoke(new RowTask(engine, 0, engine.getRows()));
+  }
+
+  /**
+   * stops the pool's workers, used when the Life object is replaced.
+   */
+  void shutdown()
+  {
+    pool.shutdown();
+  }
+
+  /**
+   * steps a rectangle of tiles, [startRow, endRow) x [startCol, endCol) in
+   * tile coordinates, halving the longer side until a single tile is left.
+   * A rectangle with no active tiles returns without splitting, unless the
+   * rule births cells from nothing and every tile changes.
+   */
+  private static class TileTask extends RecursiveAction
+  {
+    private static final long serialVersionUID = 1L;
+
+    private final Board oldBoard;
+    private final Board newBoard;
+    private final TileTracker tiles;
+    private final int startRow, endRow, startCol, endCol;
+
+    TileTask(Board oldBoard, Board newBoard, TileTracker tiles, int startRow, int endRow,
+             int startCol, int endCol)
+    {
+      this.oldBoard = oldBoard;
+      this.newBoard = newBoard;
+      this.tiles = tiles;
+      this.startRow = startRow;
+      this.endRow = endRow;
+      this.startCol = startCol;
+      this.endCol = endCol;
+    }
+
+    @Override
+    protected void compute()
+    {
+      if (!oldBoard.getRule().birthsFromNothing()
+              && tiles.countActive(startRow, endRow, startCol, endCol) == 0) return;
+      int rows = endRow - startRow;
+      int cols = endCol - startCol;
+      if (rows == 1 && cols == 1)
+      {
+        int size = TileTracker.TILE_SIZE;
+        oldBoard.stepInto(newBoard, startRow * size, Math.min(oldBoard.getSize(), endRow * size),
+                startCol * size, Math.min(oldBoard.getSize(), endCol * size), tiles);
+      }
+      else if (rows >= cols)
+      {
+        int mid = startRow + rows / 2;
+        invokeAll(new TileTask(oldBoard, newBoard, tiles, startRow, mid, startCol, endCol),
+                new TileTask(oldBoard, newBoard, tiles, mid, endRow, startCol, endCol));
+      }
+      else
+      {
+        int mid = startCol + cols / 2;
+        invokeAll(new TileTask(oldBoard, newBoard, tiles, startRow, endRow, startCol, mid),
+                new TileTask(oldBoard, newBoard, tiles, startRow, endRow, mid, endCol));
+      }
+    }
+  }
+
+  /**
+   * steps rows [startRow, endRow) of a striped engine, halving the range
+   * until it is MIN_ROWS or less.
+   */
+  private static class RowTask extends RecursiveAction
+  {
+    private static final long serialVersionUID = 1L;
+
+    private final StripedEngine engine;
+    private final int startRow, endRow;
+
+    RowTask(StripedEngine engine, int startRow, int endRow)
+    {
+      this.engine = engine;
+      this.startRow = startRow;
+      this.endRow = endRow;
+    }
+
+    @Override
+    protected void compute()
+    {
+      if (endRow - startRow <= MIN_ROWS)
+      {
+        engine.stepRows(startRow, endRow);
+        return;
+      }
+      int mid = startRow + (endRow - startRow) / 2;
+      invokeAll(new RowTask(engine, startRow, mid), new RowTask(engine, mid, endRow));
+    }
+  }
+}
@@ -0,0 +1,121 @@
+package cs351;
+
+/*
+ * Lock-free triple buffer handing finished generations from the
+ * simulation threads to the JavaFX thread. The simulation always has a
+ * back slot to write and never waits on painting, the canvas takes the
+ * newest published slot when it draws and skips any it missed. Each
+ * slot also records the tiles changed since the frame taken before it,
+ * so the canvas only redraws those.
+ */
+
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicInteger;
+
+class FrameBuffer
+{
+  private static final int INDEX = 3;     // slot index bits of middle
+  private static final int FRESH = 4;     // middle holds a frame not yet taken
+
+  private final int size;
+  private final byte[][][] slots;
+  private final boolean[][] stale;        // per slot, tiles changed since it was last written
+  private final boolean[][] changed;      // per slot, tiles changed since the frame taken before it
+  private final AtomicInteger middle = new AtomicInteger(1);
+  private int back = 0;                   // only touched by the publishing thread
+  private int front = 2;                  // only touched by the taking thread
+  private volatile boolean invalid;       // board was edited outside of a generation
+
+  /**
+   * @param size board size, each slot is size x size.
+   */
+  FrameBuffer(int size)
+  {
+    this.size = size;
+    int tiles = (size + TileTracker.TILE_SIZE - 1) / TileTracker.TILE_SIZE;
+    this.slots = new byte[3][size][size];
+    this.stale = new boolean[3][tiles * tiles];
+    this.changed = new boolean[3][tiles * tiles];
+    for (boolean[] slot : stale) Arrays.fill(slot, true);
+    for (boolean[] slot : changed) Arrays.fill(slot, true);
+  }
+
+  /**
+   * makes the next publish copy the whole board, for edits the tile
+   * tracker doesn't see such as loads, resets and clicks.
+   */
+  void invalidate()
+  {
+    invalid = true;
+  }
+
+  /**
+   * copies a finished generation into the back slot and makes it the newest
+   * frame. With a tracker only tiles changed since this slot was last
+   * written are copied. Called by one simulation thread at a time.
+   * @param cells cell ages of the finished generation.
+   * @param tiles tracker of that generation, or null to copy everything.
+   */
+  void publish(byte[][] cells, TileTracker tiles)
+  {
+    int tileCount = stale[0].length;
+    int perSide = (size + TileTracker.TILE_SIZE - 1) / TileTracker.TILE_SIZE;
+    boolean all = tiles == null || invalid;
+    invalid = false;
+    // a frame still waiting in the middle is skipped, its changes carry over
+    int waiting = middle.get();
+    boolean[] skipped = (waiting & FRESH) != 0 ? changed[waiting & INDEX] : null;
+    for (int t = 0; t < tileCount; t++)
+    {
+      boolean dirty = all || tiles.isDirty(t / perSide, t % perSide);
+      if (dirty) stale[0][t] = stale[1][t] = stale[2][t] = true;
+      changed[back][t] = dirty || skipped != null && skipped[t];
+    }
+
+    byte[][] slot = slots[back];
+    for (int t = 0; t < tileCount; t++)
+    {
+      if (!stale[back][t]) continue;
+      stale[back][t] = false;
+      int startRow = (t / perSide) * TileTracker.TILE_SIZE;
+      int startCol = (t % perSide) * TileTracker.TILE_SIZE;
+      int endRow = Math.min(size, startRow + TileTracker.TILE_SIZE);
+      int length = Math.min(size, startCol + TileTracker.TILE_SIZE) - startCol;
+      for (int row = startRow; row < endRow; row++)
+      {
+        System.arraycopy(cells[row], startCol, slot[row], startCol, length);
+      }
+    }
+    back = middle.getAndSet(back | FRESH) & INDEX;
+  }
+
+  /**
+   * @return false while the last published frame is still waiting to be
+   * taken, publishing now would only replace it. Engines skip building
+   * the board for a frame until this is true again.
+   */
+  boolean wantsFrame()
+  {
+    return (middle.get() & FRESH) == 0;
+  }
+
+  /**
+   * takes the newest published frame. Called by one thread, the FX thread.
+   * @return the frame, or null if nothing was published since the last take.
+   */
+  byte[][] take()
+  {
+    if ((middle.get() & FRESH) == 0) return null;
+    front = middle.getAndSet(front) & INDEX;
+    return slots[front];
+  }
+
+  /**
+   * @return tiles changed between the frame taken before and the last one
+   * taken, by tileRow * tiles + tileCol. Called by the taking thread.
+   */
+  boolean[] getChanged()
+  {
+    return changed[front];
+  }
+}
@@ -0,0 +1,198 @@
+package cs351;
+
+/*
+ * Per generation timings and counts of a Life: how long each BoardThread
+ * stepped its stripe and then waited at the barrier, how long the barrier
+ * action took, population, births and deaths, and how long the canvas
+ * took to draw. Uneven step times mean uneven stripes, long draws mean
+ * render stalls. Every generation can be written to a CSV or JSON lines
+ * log.
+ *
+ * Recording into the arrays and fields allocates nothing, the log does,
+ * PrintWriter formats each number to a new String.
+ * Workers write their own slot before the barrier, the barrier action
+ * reads them all, so those need no lock.
+ */
+
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.PrintWriter;
+
+class GenerationMetrics
+{
+  private final int workers;
+  private final long[] stepNanos;         // by worker, written by the worker before the barrier
+  private final long[] arrivals;          // nanoTime each worker reached the barrier
+  private final long[] waitNanos;         // the rest guarded by this
+  private long generation = -1;
+  private long finishNanos;
+  private long population;
+  private long births;
+  private long deaths;
+  private long renderNanos;               // longest draw since the last generation
+  private int frames;                     // draws since the last generation
+  private long pendingRenderNanos;
+  private int pendingFrames;
+  private Log log;
+
+  /**
+   * @param workers number of BoardThreads, 1 if the barrier action steps
+   *                the board itself.
+   */
+  GenerationMetrics(int workers)
+  {
+    this.workers = workers;
+    stepNanos = new long[workers];
+    arrivals = new long[workers];
+    waitNanos = new long[workers];
+  }
+
+  /**
+   * @param log written to after every generation, null for none.
+   */
+  void setLog(Log log)
+  {
+    this.log = log;
+  }
+
+  /**
+   * a worker finished its part of the generation and is about to wait at
+   * the barrier.
+   * @param worker index of the BoardThread
+   * @param start nanoTime the step started
+   * @param end nanoTime the step ended
+   */
+  void recordStep(int worker, long start, long end)
+  {
+    stepNanos[worker] = end - start;
+    arrivals[worker] = end;
+  }
+
+  /**
+   * a frame was drawn on the FX thread.
+   * @param nanos time taken to draw it.
+   */
+  synchronized void recordRender(long nanos)
+  {
+    pendingRenderNanos = Math.max(pendingRenderNanos, nanos);
+    pendingFrames++;
+  }
+
+  /**
+   * called at the end of the barrier action. Waits are measured up to the
+   * start of the action, when the last worker arrived.
+   * @param generation generation just finished
+   * @param actionStart nanoTime the barrier action started
+   * @param population live cells
+   * @param births cells born, -1 if not counted
+   * @param deaths cells that died, -1 if not counted
+   */
+  synchronized void finishGeneration(long generation, long actionStart, long population, long births,
+                                     long deaths)
+  {
+    for (int i = 0; i < workers; i++) waitNanos[i] = Math.max(0, actionStart - arrivals[i]);
+    this.generation = generation;
+    this.finishNanos = System.nanoTime() - actionStart;
+    this.population = population;
+    this.births = births;
+    this.deaths = deaths;
+    renderNanos = pendingRenderNanos;
+    frames = pendingFrames;
+    pendingRenderNanos = 0;
+    pendingFrames = 0;
+    if (log != null) log.write(this);
+  }
+
+  /**
+   * writes buffered log lines out, e.g. on pause.
+   */
+  void flush()
+  {
+    if (log != null) log.flush();
+  }
+
+  /**
+   * metrics log, one line per generation, shared by every Life of a run.
+   * JSON lines if the file ends in .json or .jsonl, CSV with a header
+   * otherwise, per worker times separated by spaces.
+   */
+  static class Log
+  {
+    private final PrintWriter out;
+    private final boolean json;
+
+    /**
+     * @param path file to write, replaced if it exists.
+     * @throws IOException if it can't be created.
+     */
+    Log(String path) throws IOException
+    {
+      out = new PrintWriter(new FileWriter(path), false);
+      json = path.endsWith(".json") || path.endsWith(".jsonl");
+      if (!json)
+      {
+        out.println("generation,population,births,deaths,step_ns,wait_ns,finish_ns,render_ns,frames");
+      }
+    }
+
+    private synchronized void write(GenerationMetrics metrics)
+    {
+      if (json)
+      {
+        out.print("{\"generation\":");
+        out.print(metrics.generation);
+        out.print(",\"population\":");
+        out.print(metrics.population);
+        out.print(",\"births\":");
+        out.print(metrics.births);
+        out.print(",\"deaths\":");
+        out.print(metrics.deaths);
+        out.print(",\"step_ns\":");
+        printTimes(metrics.stepNanos, metrics.workers);
+        out.print(",\"wait_ns\":");
+        printTimes(metrics.waitNanos, metrics.workers);
+        out.print(",\"finish_ns\":");
+        out.print(metrics.finishNanos);
+        out.print(",\"render_ns\":");
+        out.print(metrics.renderNanos);
+        out.print(",\"frames\":");
+        out.print(metrics.frames);
+        out.println('}');
+        return;
+      }
+      out.print(metrics.generation);
+      out.print(',');
+      out.print(metrics.population);
+      out.print(',');
+      out.print(metrics.births);
+      out.print(',');
+      out.print(metrics.deaths);
+      out.print(',');
+      printTimes(metrics.stepNanos, metrics.workers);
+      out.print(',');
+      printTimes(metrics.waitNanos, metrics.workers);
+      out.print(',');
+      out.print(metrics.finishNanos);
+      out.print(',');
+      out.print(metrics.renderNanos);
+      out.print(',');
+      out.println(metrics.frames);
+    }
+
+    private void printTimes(long[] nanos, int count)
+    {
+      if (json) out.print('[');
+      for (int i = 0; i < count; i++)
+      {
+        if (i > 0) out.print(json ? ',' : ' ');
+        out.print(nanos[i]);
+      }
+      if (json) out.print(']');
+    }
+
+    synchronized void flush()
+    {
+      out.flush();
+    }
+  }
+}
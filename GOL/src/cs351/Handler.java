@@ -12,7 +12,7 @@ import javafx.scene.input.ScrollEvent;
 class Handler
 {
   private static final double MAX_SCALE = 50.0;
-  private static final double MIN_SCALE = 2.0;
+  private static final double MIN_SCALE = 1.0 / 16;    // below 1 the density image is drawn
   private Controller controller;
   private CanvasClass canvas;
 
@@ -42,7 +42,7 @@ class Handler
       if (event.getDeltaY() < 0) scale /= delta;
       else scale *= delta;
 
-      scale = clamp(scale, MIN_SCALE, MAX_SCALE); //does not allow larger than 50, or smaller than 1
+      scale = clamp(scale, MIN_SCALE, MAX_SCALE); //does not allow larger than 50, or smaller than 1/16
 
       canvas.dx = controller.pixelX * (1 - delta);
       canvas.dy = controller.pixelY * (1 - delta);
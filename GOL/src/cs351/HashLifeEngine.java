@@ -0,0 +1,368 @@
+package cs351;
+
+/*
+ * HashLife engine. Stores the universe as a memoized quadtree of
+ * QuadNodes, so repeated structure is only stored and stepped once and
+ * a single step can jump 2^stepExponent generations. The universe grows
+ * as needed, the Board is only a window onto its top left corner.
+ */
+
+import java.util.Arrays;
+import java.util.HashMap;
+
+class HashLifeEngine implements LifeEngine
+{
+  private static final int MIN_LEVEL = 3;
+  private static final int MAX_NODES = 4_000_000;  // re-intern past this many nodes
+
+  private HashMap<QuadNode, QuadNode> nodes = new HashMap<>();
+  private final QuadNode dead = new QuadNode(false);
+  private final QuadNode alive = new QuadNode(true);
+  private QuadNode[] emptyNodes = new QuadNode[64];
+  private QuadNode root;
+  private long originRow;                 // board coordinates of root's top left cell
+  private long originCol;
+  private int stepExponent;
+  private long generation;
+  private long storedGeneration;          // generation of the last load or store
+  private byte[][] scratch;
+  private final byte[] leafResults;       // 4x4 block to its centre 2x2 a generation on
+
+  /**
+   * @param stepExponent each call to step advances 2^stepExponent generations.
+   */
+  HashLifeEngine(int stepExponent)
+  {
+    this(stepExponent, Rule.LIFE);
+  }
+
+  /**
+   * @param stepExponent each call to step advances 2^stepExponent generations.
+   * @param rule an outer totalistic rule without B0, empty space must stay empty.
+   */
+  HashLifeEngine(int stepExponent, Rule rule)
+  {
+    if (!rule.isOuterTotalistic() || rule.birthsFromNothing())
+    {
+      throw new IllegalArgumentException("HashLife can't run " + rule);
+    }
+    this.leafResults = rule.getLeafResults();
+    this.stepExponent = stepExponent;
+    emptyNodes[0] = dead;
+    root = empty(MIN_LEVEL);
+  }
+
+  /**
+   * sets how many generations (2^exponent) a step advances. Results of
+   * nodes stepped at full speed, 2^(level-2) generations, don't depend on
+   * the exponent and are kept. Each node holds one slower result, so
+   * those are recomputed after a change, as they are after a collect.
+   * @param exponent new step exponent.
+   */
+  void setStepExponent(int exponent)
+  {
+    this.stepExponent = exponent;
+  }
+
+  int getStepExponent()
+  {
+    return stepExponent;
+  }
+
+  @Override
+  public void load(Board board)
+  {
+    nodes = new HashMap<>();
+    emptyNodes = new QuadNode[64];
+    emptyNodes[0] = dead;
+    int level = MIN_LEVEL;
+    while ((1 << level) < board.board.length) level++;
+    root = build(board.board, level, 0, 0);
+    originRow = 0;
+    originCol = 0;
+    generation = 0;
+    storedGeneration = 0;
+  }
+
+  @Override
+  public long step()
+  {
+    crop();
+    while (root.level < stepExponent + MIN_LEVEL || !isPadded(root))
+    {
+      originRow -= 1L << (root.level - 1);
+      originCol -= 1L << (root.level - 1);
+      root = centre(root);
+    }
+    // successor of the centred root covers the same cells as root
+    root = successor(centre(root), stepExponent);
+    generation += 1L << stepExponent;
+    if (nodes.size() > MAX_NODES) collect();
+    return 1L << stepExponent;
+  }
+
+  @Override
+  public void store(Board board)
+  {
+    byte[][] cells = board.board;
+    if (scratch == null || scratch.length != cells.length) scratch = new byte[cells.length][cells.length];
+    else for (byte[] row : scratch) Arrays.fill(row, (byte) 0);
+
+    paint(root, originRow, originCol, scratch);
+    int elapsed = (int) Math.min(Rule.MAX_AGE, generation - storedGeneration);
+    storedGeneration = generation;
+    for (int row = 0; row < cells.length; row++)
+    {
+      for (int col = 0; col < cells[row].length; col++)
+      {
+        if (scratch[row][col] == 0) cells[row][col] = 0;
+        else if (cells[row][col] == 0) cells[row][col] = 1;
+        else cells[row][col] = (byte) Math.min(Rule.MAX_AGE, cells[row][col] + elapsed);
+      }
+    }
+  }
+
+  @Override
+  public void setCell(int row, int col, boolean isAlive)
+  {
+    while (row < originRow || col < originCol || row >= originRow + (1L << root.level)
+            || col >= originCol + (1L << root.level))
+    {
+      originRow -= 1L << (root.level - 1);
+      originCol -= 1L << (root.level - 1);
+      root = centre(root);
+    }
+    root = set(root, row - originRow, col - originCol, isAlive);
+  }
+
+  @Override
+  public long getGeneration()
+  {
+    return generation;
+  }
+
+  @Override
+  public long getPopulation()
+  {
+    return root.population;
+  }
+
+  /**
+   * canonical node for the given children.
+   */
+  private QuadNode join(QuadNode nw, QuadNode ne, QuadNode sw, QuadNode se)
+  {
+    QuadNode node = new QuadNode(nw, ne, sw, se);
+    QuadNode existing = nodes.putIfAbsent(node, node);
+    return existing == null ? node : existing;
+  }
+
+  /**
+   * canonical empty node of the given level.
+   */
+  private QuadNode empty(int level)
+  {
+    if (emptyNodes[level] == null)
+    {
+      QuadNode child = empty(level - 1);
+      emptyNodes[level] = join(child, child, child, child);
+    }
+    return emptyNodes[level];
+  }
+
+  /**
+   * node one level up with the given node in its centre.
+   */
+  private QuadNode centre(QuadNode node)
+  {
+    QuadNode e = empty(node.level - 1);
+    return join(join(e, e, e, node.nw), join(e, e, node.ne, e),
+            join(e, node.sw, e, e), join(node.se, e, e, e));
+  }
+
+  /**
+   * the centre quarter of a node, one level down.
+   */
+  private QuadNode inner(QuadNode node)
+  {
+    return join(node.nw.se, node.ne.sw, node.sw.ne, node.se.nw);
+  }
+
+  /**
+   * true if every live cell is inside the centre quarter of the node.
+   */
+  private boolean isPadded(QuadNode node)
+  {
+    return node.level >= 2 && inner(node).population == node.population;
+  }
+
+  /**
+   * shrinks root while all of its cells fit in a smaller node.
+   */
+  private void crop()
+  {
+    while (root.level > MIN_LEVEL && isPadded(root) && isPadded(inner(root)))
+    {
+      originRow += 1L << (root.level - 2);
+      originCol += 1L << (root.level - 2);
+      root = inner(root);
+    }
+  }
+
+  /**
+   * centre of the node advanced 2^exponent generations, exponent capped at
+   * level - 2. Results are memoized on the node, full speed ones apart
+   * from the slower ones so changing the exponent only loses the latter.
+   * @param node node of level 2 or higher.
+   * @param exponent log2 of generations to advance.
+   * @return node one level down.
+   */
+  private QuadNode successor(QuadNode node, int exponent)
+  {
+    if (node.population == 0) return node.nw;
+    int j = Math.min(exponent, node.level - 2);
+    boolean full = j == node.level - 2;
+    if (full && node.result != null) return node.result;
+    if (!full && node.slowExponent == j) return node.slowResult;
+
+    QuadNode result;
+    if (node.level == 2)
+    {
+      result = leafSuccessor(node);
+    }
+    else
+    {
+      QuadNode c1 = successor(node.nw, j);
+      QuadNode c2 = successor(join(node.nw.ne, node.ne.nw, node.nw.se, node.ne.sw), j);
+      QuadNode c3 = successor(node.ne, j);
+      QuadNode c4 = successor(join(node.nw.sw, node.nw.se, node.sw.nw, node.sw.ne), j);
+      QuadNode c5 = successor(inner(node), j);
+      QuadNode c6 = successor(join(node.ne.sw, node.ne.se, node.se.nw, node.se.ne), j);
+      QuadNode c7 = successor(node.sw, j);
+      QuadNode c8 = successor(join(node.sw.ne, node.se.nw, node.sw.se, node.se.sw), j);
+      QuadNode c9 = successor(node.se, j);
+
+      if (j < node.level - 2)
+      {
+        result = join(join(c1.se, c2.sw, c4.ne, c5.nw), join(c2.se, c3.sw, c5.ne, c6.nw),
+                join(c4.se, c5.sw, c7.ne, c8.nw), join(c5.se, c6.sw, c8.ne, c9.nw));
+      }
+      else
+      {
+        result = join(successor(join(c1, c2, c4, c5), j), successor(join(c2, c3, c5, c6), j),
+                successor(join(c4, c5, c7, c8), j), successor(join(c5, c6, c8, c9), j));
+      }
+    }
+    if (full)
+    {
+      node.result = result;
+    }
+    else
+    {
+      node.slowResult = result;
+      node.slowExponent = j;
+    }
+    return result;
+  }
+
+  /**
+   * one generation of a 4x4 node, looked up from leafResults.
+   */
+  private QuadNode leafSuccessor(QuadNode node)
+  {
+    int bits = 0;
+    QuadNode[] quads = {node.nw, node.ne, node.sw, node.se};
+    for (int q = 0; q < 4; q++)
+    {
+      QuadNode quad = quads[q];
+      int rowOffset = (q / 2) * 2;
+      int colOffset = (q % 2) * 2;
+      if (quad.nw.population != 0) bits |= 1 << (rowOffset * 4 + colOffset);
+      if (quad.ne.population != 0) bits |= 1 << (rowOffset * 4 + colOffset + 1);
+      if (quad.sw.population != 0) bits |= 1 << ((rowOffset + 1) * 4 + colOffset);
+      if (quad.se.population != 0) bits |= 1 << ((rowOffset + 1) * 4 + colOffset + 1);
+    }
+    int result = leafResults[bits];
+    return join(leaf(result & 1), leaf(result & 2), leaf(result & 4), leaf(result & 8));
+  }
+
+  private QuadNode leaf(int bit)
+  {
+    return bit != 0 ? alive : dead;
+  }
+
+  /**
+   * builds a node from the board's cells, cells outside the board are dead.
+   */
+  private QuadNode build(byte[][] cells, int level, int row, int col)
+  {
+    if (row >= cells.length || col >= cells.length) return empty(level);
+    if (level == 0) return leaf(cells[row][col]);
+    int half = 1 << (level - 1);
+    return join(build(cells, level - 1, row, col), build(cells, level - 1, row, col + half),
+            build(cells, level - 1, row + half, col), build(cells, level - 1, row + half, col + half));
+  }
+
+  /**
+   * copy of the node with a single cell changed.
+   */
+  private QuadNode set(QuadNode node, long row, long col, boolean isAlive)
+  {
+    if (node.level == 0) return isAlive ? alive : dead;
+    long half = 1L << (node.level - 1);
+    boolean south = row >= half;
+    boolean east = col >= half;
+    long r = south ? row - half : row;
+    long c = east ? col - half : col;
+    if (!south && !east) return join(set(node.nw, r, c, isAlive), node.ne, node.sw, node.se);
+    if (!south) return join(node.nw, set(node.ne, r, c, isAlive), node.sw, node.se);
+    if (!east) return join(node.nw, node.ne, set(node.sw, r, c, isAlive), node.se);
+    return join(node.nw, node.ne, node.sw, set(node.se, r, c, isAlive));
+  }
+
+  /**
+   * marks the live cells of the node that fall inside the board.
+   */
+  private void paint(QuadNode node, long row, long col, byte[][] cells)
+  {
+    long size = 1L << node.level;
+    if (node.population == 0 || row >= cells.length || col >= cells.length
+            || row + size <= 0 || col + size <= 0) return;
+    if (node.level == 0)
+    {
+      cells[(int) row][(int) col] = 1;
+      return;
+    }
+    long half = size / 2;
+    paint(node.nw, row, col, cells);
+    paint(node.ne, row, col + half, cells);
+    paint(node.sw, row + half, col, cells);
+    paint(node.se, row + half, col + half, cells);
+  }
+
+  /**
+   * drops every node not reachable from root, along with memoized results,
+   * so the node table only grows with the current pattern.
+   */
+  private void collect()
+  {
+    HashMap<QuadNode, QuadNode> live = new HashMap<>();
+    keep(root, live);
+    nodes = live;
+    emptyNodes = new QuadNode[64];
+    emptyNodes[0] = dead;
+  }
+
+  private void keep(QuadNode node, HashMap<QuadNode, QuadNode> live)
+  {
+    if (node.level == 0 || live.containsKey(node)) return;
+    node.result = null;
+    node.slowResult = null;
+    node.slowExponent = -1;
+    live.put(node, node);
+    keep(node.nw, live);
+    keep(node.ne, live);
+    keep(node.sw, live);
+    keep(node.se, live);
+  }
+}
@@ -3,9 +3,21 @@ package cs351;
 /*
  * Created by Kevin Cox on 2/10/2017.
  * Simple class to provide a way to simulate the cells lifecycle.
+ * The BoardThreads are started once and live as long as this Life. Each
+ * generation is handed out by raising a granted counter, the barrier
+ * action swaps the boards and counts the generation as finished. While
+ * running, the waiting threads grant the next one themselves once the
+ * Thread Sleep pause is over, the barrier action never sleeps. Pause
+ * stops granting and waits out the generation in flight, so edits never
+ * race a step, and pause, resume and single steps allocate nothing.
+ * Cell toggles and pattern stamps made while a generation is stepped are
+ * queued and applied by the barrier action, whole, between generations.
  */
 
+import javafx.application.Platform;
+
 import java.util.ArrayList;
+import java.util.concurrent.ConcurrentLinkedQueue;
 import java.util.concurrent.CyclicBarrier;
 
 class Life
@@ -16,16 +28,64 @@ class Life
   private int numThreads;
   private ArrayList<BoardThread> boardThreads;
   private CanvasClass canvas;
+  private LifeEngine engine;              // null steps with BoardThreads
+  private StripedEngine stripedEngine;    // engine stepped by BoardThreads, if it allows it
+  private boolean boardStale;             // engine is ahead of oldBoard, stored only when needed
+  private TileTracker tiles;              // active tiles of the byte boards
+  private ForkJoinStepper stepper;        // work stealing instead of row stripes, if set
+  private CycleDetector cycles;           // hashes the byte boards' generations
+  private GenerationMetrics metrics;
+  private long population;                // live cells of the byte boards, kept up by countChanges
+  private final long[] changes = new long[2];
+  private final ConcurrentLinkedQueue<Edit> edits = new ConcurrentLinkedQueue<>();
+  private final Object lock = new Object();
+  private long generation;                // generations finished, guarded by lock
+  private long granted;                   // generations the threads may start, guarded by lock
+  private long nextGrant;                 // nanoTime the next generation is granted if running, guarded by lock
+  private boolean running;                // grant the next generation when one finishes
+  private boolean disposed;
 
   Life(Board oldBoard, int threads, CanvasClass canvas)
+  {
+    this(oldBoard, threads, canvas, null, false);
+  }
+
+  Life(Board oldBoard, int threads, CanvasClass canvas, LifeEngine engine, boolean workStealing)
   {
     this.canvas = canvas;
+    this.engine = engine;
+    if (engine instanceof StripedEngine) this.stripedEngine = (StripedEngine) engine;
     this.numThreads = threads;
     boardThreads = new ArrayList<>();
-    this.barrier = new CyclicBarrier(threads, this::onBarrierBroken);
     this.oldBoard = oldBoard;
     this.newBoard = new Board();
-    initializeThreads();
+    if (engine == null)
+    {
+      tiles = new TileTracker(Main.SIZE);
+      tiles.setWrap(oldBoard.getBoundary() == Boundary.TORUS);
+      cycles = new CycleDetector();
+      cycles.reset(oldBoard.board, generation);
+    }
+    oldBoard.setCycleDetector(cycles);
+    if (workStealing && (engine == null || stripedEngine != null)) stepper = new ForkJoinStepper(threads);
+    if (engine != null) engine.load(oldBoard);
+    if (stepper == null && (engine == null || stripedEngine != null))
+    {
+      this.barrier = new CyclicBarrier(threads, this::onBarrierBroken);
+      initializeThreads();
+    }
+    else
+    {
+      // the pool or the engine steps the whole board, one thread with no rows drives it
+      this.barrier = new CyclicBarrier(1, this::onBarrierBroken);
+      boardThreads.add(new BoardThread(0, 0, oldBoard, newBoard, barrier, stripedEngine, tiles, this));
+    }
+    metrics = new GenerationMetrics(boardThreads.size());
+    metrics.setLog(Main.metricsLog);
+    canvas.setMetrics(metrics);
+    if (engine == null) population = countPopulation();
+    for (BoardThread thread : boardThreads) thread.start();
+    canvas.invalidateFrames();
     canvas.updateGUI();
   }
 
@@ -45,7 +105,8 @@ class Life
         end = Main.SIZE / numThreads + end;
 //        System.out.println("start: " + start + " end: " + end);
         BoardThread thread = new BoardThread(start, end, oldBoard,
-                newBoard, barrier);
+                newBoard, barrier, stripedEngine, tiles, this);
+        thread.index = boardThreads.size();
         boardThreads.add(thread);
         start = end;
       }
@@ -54,7 +115,8 @@ class Life
       {
         end = Main.SIZE / numThreads + end;
         BoardThread thread = new BoardThread(start, end, oldBoard,
-                newBoard, barrier);
+                newBoard, barrier, stripedEngine, tiles, this);
+        thread.index = boardThreads.size();
         boardThreads.add(thread);
         start = end;
       }
@@ -75,45 +137,384 @@ class Life
   }
 
   /**
-   * unpauses animation and threads for GUI.
+   * unpauses the threads, generations are granted until pauseLife.
    */
   void unPauseLife()
   {
-    for (BoardThread thread : boardThreads)
+    synchronized (lock)
+    {
+      running = true;
+      granted = Math.max(granted, generation + 1);
+      lock.notifyAll();
+    }
+  }
+
+  /**
+   * stops granting generations and waits for the one in flight, if any,
+   * so the boards can be edited once this returns.
+   */
+  void pauseLife()
+  {
+    synchronized (lock)
+    {
+      running = false;
+      awaitFinished(granted);
+      applyEdits(generation);
+      syncBoard();
+    }
+    metrics.flush();
+  }
+
+  /**
+   * advances the generation of the current board state by one. While
+   * paused this waits for it, while running it is one extra generation.
+   */
+  void advanceOneGeneration()
+  {
+    synchronized (lock)
+    {
+      granted++;
+      lock.notifyAll();
+      if (running) return;
+      awaitFinished(granted);
+      syncBoard();
+    }
+  }
+
+  /**
+   * waits, holding lock, until the threads have finished a generation.
+   */
+  private void awaitFinished(long target)
+  {
+    try
+    {
+      while (generation < target) lock.wait();
+    } catch (InterruptedException e)
+    {
+      Thread.currentThread().interrupt();
+    }
+  }
+
+  /**
+   * called by the BoardThreads before each generation. While running, the
+   * first thread to see the Thread Sleep pause over grants the next
+   * generation, so pause and Next are never held up by the pause.
+   * @return true once the next generation is granted, false if this Life
+   * was disposed and the thread should end.
+   * @throws InterruptedException if interrupted while waiting.
+   */
+  boolean awaitGeneration() throws InterruptedException
+  {
+    synchronized (lock)
     {
-      if (thread != null)
+      while (!disposed && granted == generation)
       {
-        thread = new BoardThread(thread.startRow, thread.endRow, oldBoard, newBoard, barrier);
-        thread.start();
+        if (!running)
+        {
+          lock.wait();
+          continue;
+        }
+        long wait = nextGrant - System.nanoTime();
+        if (wait <= 0) granted = generation + 1;
+        else lock.wait(wait / 1000000, (int) (wait % 1000000));
       }
+      return !disposed;
     }
   }
 
   /**
-   * advances the generation of the current board state by one.
+   * toggles a cell on the board, and in the engine if there is one.
+   * @param x row
+   * @param y col
    */
-  void advanceOneGeneration()
+  void toggleLife(int x, int y)
+  {
+    edit(new Edit(x, y, null));
+  }
+
+  /**
+   * stamps a pattern's live cells onto the board, top left corner at
+   * (x, y). Cells past the edge are dropped, cells already alive keep
+   * their age. The whole stamp lands between the same two generations.
+   * @param stamp pattern to stamp.
+   * @param x row
+   * @param y col
+   */
+  void stamp(Stamp stamp, int x, int y)
+  {
+    edit(new Edit(x, y, stamp));
+  }
+
+  /**
+   * queues an edit for the barrier action, or applies the queue now if no
+   * generation is being stepped.
+   */
+  private void edit(Edit edit)
+  {
+    synchronized (lock)
+    {
+      edits.add(edit);
+      if (generation == granted) applyEdits(generation);
+    }
+  }
+
+  /**
+   * applies the queued edits, if any.
+   * @param boardGeneration generation the boards hold.
+   */
+  private void applyEdits(long boardGeneration)
+  {
+    Edit edit = edits.poll();
+    if (edit == null) return;
+    syncBoard();                          // toggles read the board
+    for (; edit != null; edit = edits.poll()) applyEdit(edit);
+    finishEdits(boardGeneration);
+  }
+
+  private void applyEdit(Edit edit)
+  {
+    if (edit.stamp == null)
+    {
+      setCell(edit.row, edit.col, oldBoard.board[edit.row][edit.col] == 0);
+      return;
+    }
+    int size = oldBoard.getSize();
+    for (int i = 0; i < edit.stamp.size(); i++)
+    {
+      int row = edit.row + edit.stamp.getRow(i);
+      int col = edit.col + edit.stamp.getCol(i);
+      if (row < size && col < size) setCell(row, col, true);
+    }
+  }
+
+  /**
+   * sets one cell of the board and the engine, or marks its tile. Between
+   * generations only.
+   */
+  private void setCell(int row, int col, boolean alive)
+  {
+    byte[] cells = oldBoard.board[row];
+    if (alive && cells[col] > 0) return;
+    if (engine == null) population += alive ? 1 : cells[col] > 0 ? -1 : 0;
+    cells[col] = (byte) (alive ? 1 : 0);
+    if (engine != null) engine.setCell(row, col, alive);
+    else tiles.markCell(row, col);
+  }
+
+  /**
+   * brings oldBoard up to the engine's generation, if it is behind. The
+   * engines' cells only become ages here, on generations a frame is
+   * taken or the board is read, not every generation. Between generations
+   * only.
+   */
+  private void syncBoard()
+  {
+    if (!boardStale) return;
+    engine.store(oldBoard);
+    boardStale = false;
+  }
+
+  /**
+   * the board was edited, the cycle hash and the frames are out of date.
+   */
+  private void finishEdits(long boardGeneration)
+  {
+    if (engine == null) cycles.reset(oldBoard.board, boardGeneration);
+    canvas.invalidateFrames();
+  }
+
+  /**
+   * reloads the engine after the board has been replaced, e.g. on reset.
+   */
+  void reload()
+  {
+    if (engine != null)
+    {
+      engine.load(oldBoard);
+      boardStale = false;
+    }
+    else
+    {
+      tiles.markAll();
+      cycles.reset(oldBoard.board, generation);
+      population = countPopulation();
+    }
+    canvas.invalidateFrames();
+  }
+
+  /**
+   * @return timings and counts of the generations, see GenerationMetrics.
+   */
+  GenerationMetrics getMetrics()
+  {
+    return metrics;
+  }
+
+  /**
+   * steps one generation on the ForkJoinPool.
+   */
+  private void forkJoinGeneration()
+  {
+    if (stripedEngine != null) stepper.step(stripedEngine);
+    else stepper.step(oldBoard, newBoard, tiles);
+  }
+
+  /**
+   * swaps the double buffer, the two planes trade places and nothing is
+   * copied.
+   */
+  private void swapBoards()
+  {
+    byte[][] temp = oldBoard.board;
+    oldBoard.board = newBoard.board;
+    newBoard.board = temp;
+  }
+
+  private long countPopulation()
+  {
+    long count = 0;
+    for (byte[] row : oldBoard.board)
+    {
+      for (byte cell : row) if (cell > 0) count++;
+    }
+    return count;
+  }
+
+  /**
+   * counts births and deaths in the tiles that changed, comparing the
+   * generation just finished with the one before it, still in newBoard.
+   * @return {births, deaths}, in a reused array.
+   */
+  private long[] countChanges()
+  {
+    long births = 0;
+    long deaths = 0;
+    int size = oldBoard.getSize();
+    for (int tileRow = 0; tileRow < tiles.getTiles(); tileRow++)
+    {
+      for (int tileCol = 0; tileCol < tiles.getTiles(); tileCol++)
+      {
+        if (!tiles.isDirty(tileRow, tileCol)) continue;
+        int lastRow = Math.min(size, (tileRow + 1) * TileTracker.TILE_SIZE);
+        int firstCol = tileCol * TileTracker.TILE_SIZE;
+        int lastCol = Math.min(size, firstCol + TileTracker.TILE_SIZE);
+        for (int row = tileRow * TileTracker.TILE_SIZE; row < lastRow; row++)
+        {
+          byte[] now = oldBoard.board[row];
+          byte[] before = newBoard.board[row];
+          for (int col = firstCol; col < lastCol; col++)
+          {
+            if (now[col] > 0 && before[col] <= 0) births++;
+            else if (now[col] <= 0 && before[col] > 0) deaths++;
+          }
+        }
+      }
+    }
+    changes[0] = births;
+    changes[1] = deaths;
+    return changes;
+  }
+
+  /**
+   * hashes the generation just finished. On the first still life or
+   * oscillator found the simulation pauses, nothing new would happen, and
+   * the Controller shows the period and the generation it was entered.
+   * Next and unpause still step it on from there.
+   * @return true if a cycle was found, the caller stops granting.
+   */
+  private boolean checkCycles()
+  {
+    if (!cycles.finishGeneration(generation + 1)) return false;
+    long period = cycles.getPeriod();
+    long entry = cycles.getEntryGeneration();
+    Controller controller = canvas.getController();
+    Platform.runLater(() -> controller.showCycle(this, period, entry));
+    return true;
+  }
+
+  /**
+   * pauses, ends the BoardThreads and shuts down the ForkJoinPool, if any.
+   * Called when this Life is replaced.
+   */
+  void dispose()
   {
-    for (BoardThread thread : boardThreads)
+    pauseLife();
+    synchronized (lock)
     {
-      thread.advanceGeneration();
+      disposed = true;
+      lock.notifyAll();
     }
+    if (stepper != null) stepper.shutdown();
   }
 
   /**
-   * When each thread has finished with their row section, update GUI
-   * and swap double buffer.
+   * When each thread has finished with their row section, swap double
+   * buffer and publish the generation for the GUI to pick up. Engines the
+   * threads don't stripe are stepped here, and an engine's cells are only
+   * stored into the board when the GUI has taken the last frame. Then the
+   * Thread Sleep pause starts, the threads waiting in awaitGeneration grant
+   * the next generation when it is over, if still running and no cycle was
+   * found.
    */
   private void onBarrierBroken()
   {
-    if (!Controller.paused)
+    long start = System.nanoTime();
+    boolean cycled = false;
+    if (stepper != null || (engine != null && stripedEngine == null))
+    {
+      if (stepper != null) forkJoinGeneration();
+      else engine.step();
+      metrics.recordStep(0, start, System.nanoTime());
+    }
+
+    if (engine != null)
+    {
+      if (stripedEngine != null) stripedEngine.finishGeneration();
+      boardStale = true;
+      applyEdits(generation + 1);
+      // the last frame not taken yet, storing the board for a new one would be wasted
+      if (canvas.wantsFrame())
+      {
+        syncBoard();
+        canvas.publish(null);
+      }
+      metrics.finishGeneration(generation + 1, start, engine.getPopulation(), -1, -1);
+    }
+    else
     {
-      byte[][] temp = oldBoard.board;
-      oldBoard.board = newBoard.board;
-      newBoard.board = temp;
-      canvas.updateGUI();
+      swapBoards();
+      tiles.finishGeneration();
+      cycled = checkCycles();
+      long[] changes = countChanges();
+      population += changes[0] - changes[1];
+      applyEdits(generation + 1);
+      canvas.publish(tiles);
+      metrics.finishGeneration(generation + 1, start, population, changes[0], changes[1]);
+    }
+
+    synchronized (lock)
+    {
+      generation++;
+      if (cycled) running = false;
+      nextGrant = System.nanoTime() + Controller.frames * 1000000L;
+      lock.notifyAll();
     }
   }
 
+  /**
+   * a cell toggle, or a stamp if stamp is set.
+   */
+  private static class Edit
+  {
+    private final int row;
+    private final int col;
+    private final Stamp stamp;
 
+    Edit(int row, int col, Stamp stamp)
+    {
+      this.row = row;
+      this.col = col;
+      this.stamp = stamp;
+    }
+  }
 }
@@ -0,0 +1,50 @@
+package cs351;
+
+/*
+ * Pluggable stepping engine for Life. An engine owns its own cell
+ * storage and copies cells in and out of a Board, which stays the
+ * byte-per-cell view that CanvasClass draws from.
+ */
+
+interface LifeEngine
+{
+  /**
+   * replaces the engine's cells with the live cells of the board.
+   * @param board board to read from.
+   */
+  void load(Board board);
+
+  /**
+   * advances the engine's cells.
+   * @return number of generations advanced by this step.
+   */
+  long step();
+
+  /**
+   * writes the engine's cells back into the board. Cells alive at the
+   * last store are aged by the generations since, up to Rule.MAX_AGE, as
+   * BoardThread ages them one generation at a time. Cells born since are
+   * 1. Only called when the board is needed, e.g. for a frame.
+   * @param board board to write to.
+   */
+  void store(Board board);
+
+  /**
+   * sets a single cell, used for cell toggling in the GUI.
+   * @param row index
+   * @param col index
+   * @param alive new state of cell.
+   */
+  void setCell(int row, int col, boolean alive);
+
+  /**
+   * @return total generations advanced since the last load.
+   */
+  long getGeneration();
+
+  /**
+   * @return number of live cells in the engine, including any outside
+   * of the board's window.
+   */
+  long getPopulation();
+}
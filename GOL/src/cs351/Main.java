@@ -6,6 +6,8 @@ import javafx.scene.Parent;
 import javafx.scene.Scene;
 import javafx.stage.Stage;
 
+import java.util.List;
+
 /**
  * Created by Kevin Cox on 2/3/17.
  * Initializes and runs GOL program
@@ -15,11 +17,18 @@ public class Main extends Application
 {
   static final int CELLSIZE = 10;
   static final int SIZE = 150;
+  static GenerationMetrics.Log metricsLog;  // --metrics FILE, every generation of every Life
 
   @Override
   public void start(Stage primaryStage) throws Exception
   {
     primaryStage.setTitle("Game Of Life");
+    List<String> args = getParameters().getRaw();
+    int metrics = args.indexOf("--metrics");
+    if (metrics >= 0 && metrics + 1 < args.size())
+    {
+      metricsLog = new GenerationMetrics.Log(args.get(metrics + 1));
+    }
 
     FXMLLoader loader = new FXMLLoader(getClass().getResource("GUI.fxml"));
     Parent root = loader.load();
@@ -29,7 +38,11 @@ public class Main extends Application
     primaryStage.setMinWidth(500);
 
     primaryStage.show();
-    primaryStage.setOnCloseRequest(event -> System.exit(0));
+    primaryStage.setOnCloseRequest(event ->
+    {
+      if (metricsLog != null) metricsLog.flush();
+      System.exit(0);
+    });
   }
 
 
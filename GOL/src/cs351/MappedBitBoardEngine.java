@@ -0,0 +1,293 @@
+package cs351;
+
+/*
+ * Bitboard engine whose two generations live off heap, either in direct
+ * ByteBuffers or in a memory-mapped file. Same kernel as BitBoardEngine,
+ * but the stepping loop never touches the Java heap, so giant boards
+ * (32k x 32k is 128MB a plane) don't add GC work. With a file, a header
+ * records the generation, updated only after a generation is complete,
+ * so a crashed run resumes from the file. Even generations are in plane
+ * 0 and odd ones in plane 1, so the header is one aligned long written
+ * in a single put and can't name one plane with the other's generation.
+ *
+ * File layout: long magic, int size, int padding, long generation,
+ * padding to HEADER_BYTES, then plane 0 and plane 1.
+ */
+
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.LongBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+
+class MappedBitBoardEngine implements StripedEngine
+{
+  private static final long MAGIC = 0x474f4c4d41505632L;    // "GOLMAPV2"
+  private static final int HEADER_BYTES = 64;
+  private static final int GENERATION_OFFSET = 16;
+
+  private final int size;
+  private final int words;
+  private final long lastMask;
+  private final LongBuffer[] planes = new LongBuffer[2];
+  private MappedByteBuffer header;        // null without a file
+  private final MappedByteBuffer[] mapped = new MappedByteBuffer[2];
+  private RandomAccessFile file;
+  private int current;
+  private long generation;
+  private long storedGeneration;          // generation of the last load, resume or store
+  private boolean resumed;
+
+  /**
+   * engine backed by direct ByteBuffers.
+   * @param size board is size x size cells.
+   */
+  MappedBitBoardEngine(int size)
+  {
+    this.size = size;
+    this.words = (size + 63) / 64;
+    this.lastMask = size % 64 == 0 ? -1L : (1L << (size % 64)) - 1;
+    long planeBytes = (long) size * words * 8;
+    if (planeBytes > Integer.MAX_VALUE) throw new IllegalArgumentException("board too large for a plane");
+    for (int i = 0; i < 2; i++)
+    {
+      planes[i] = ByteBuffer.allocateDirect((int) planeBytes).order(ByteOrder.nativeOrder()).asLongBuffer();
+    }
+  }
+
+  /**
+   * engine backed by a memory-mapped file. If the file already holds a
+   * board of the same size it is resumed, see wasResumed. Any other non
+   * empty file is left alone, it may be a board saved at another size.
+   * @param path file to map, created if missing.
+   * @param size board is size x size cells.
+   * @throws IOException if the file can't be mapped, or isn't empty and
+   * isn't a map of a size x size board.
+   */
+  MappedBitBoardEngine(String path, int size) throws IOException
+  {
+    this.size = size;
+    this.words = (size + 63) / 64;
+    this.lastMask = size % 64 == 0 ? -1L : (1L << (size % 64)) - 1;
+    long planeBytes = (long) size * words * 8;
+    if (planeBytes > Integer.MAX_VALUE) throw new IllegalArgumentException("board too large for a plane");
+
+    file = new RandomAccessFile(path, "rw");
+    boolean existing = file.length() != 0;
+    if (existing)
+    {
+      String mismatch = checkFile(size, HEADER_BYTES + 2 * planeBytes);
+      if (mismatch != null)
+      {
+        file.close();
+        throw new IOException(path + " " + mismatch + ", not overwriting it");
+      }
+    }
+    else file.setLength(HEADER_BYTES + 2 * planeBytes);
+    FileChannel channel = file.getChannel();
+    header = channel.map(FileChannel.MapMode.READ_WRITE, 0, HEADER_BYTES);
+    for (int i = 0; i < 2; i++)
+    {
+      mapped[i] = channel.map(FileChannel.MapMode.READ_WRITE, HEADER_BYTES + i * planeBytes, planeBytes);
+      planes[i] = mapped[i].order(ByteOrder.nativeOrder()).asLongBuffer();
+    }
+
+    if (existing)
+    {
+      generation = header.getLong(GENERATION_OFFSET);
+      current = (int) (generation & 1);
+      storedGeneration = generation;
+      resumed = true;
+    }
+    else
+    {
+      header.putLong(0, MAGIC);
+      header.putInt(8, size);
+      writeHeader();
+    }
+  }
+
+  /**
+   * @return true if the mapped file already held a board, which is then
+   * current, and load doesn't need to be called.
+   */
+  boolean wasResumed()
+  {
+    return resumed;
+  }
+
+  @Override
+  public void load(Board board)
+  {
+    generation = 0;
+    storedGeneration = 0;
+    current = 0;
+    LongBuffer cells = planes[current];
+    for (int row = 0; row < size; row++)
+    {
+      for (int w = 0; w < words; w++)
+      {
+        long word = 0;
+        int end = Math.min(size, (w + 1) * 64);
+        for (int col = w * 64; col < end; col++)
+        {
+          if (board.board[row][col] != 0) word |= 1L << col;
+        }
+        cells.put(row * words + w, word);
+      }
+    }
+    writeHeader();
+  }
+
+  @Override
+  public long step()
+  {
+    stepRows(0, size);
+    finishGeneration();
+    return 1;
+  }
+
+  @Override
+  public int getRows()
+  {
+    return size;
+  }
+
+  @Override
+  public void stepRows(int startRow, int endRow)
+  {
+    LongBuffer cells = planes[current];
+    LongBuffer next = planes[1 - current];
+    for (int row = startRow; row < endRow; row++)
+    {
+      int above = (row - 1) * words;
+      int here = row * words;
+      int below = (row + 1) * words;
+      boolean hasAbove = row > 0;
+      boolean hasBelow = row < size - 1;
+
+      // slide a three word window along the row so each word is read once
+      long aPrev = 0, cPrev = 0, bPrev = 0;
+      long a = hasAbove ? cells.get(above) : 0;
+      long c = cells.get(here);
+      long b = hasBelow ? cells.get(below) : 0;
+      for (int w = 0; w < words; w++)
+      {
+        boolean last = w == words - 1;
+        long aNext = hasAbove && !last ? cells.get(above + w + 1) : 0;
+        long cNext = !last ? cells.get(here + w + 1) : 0;
+        long bNext = hasBelow && !last ? cells.get(below + w + 1) : 0;
+
+        long result = BitBoardEngine.evolve(a, aPrev, aNext, c, cPrev, cNext, b, bPrev, bNext);
+        if (last) result &= lastMask;
+        next.put(here + w, result);
+
+        aPrev = a;
+        cPrev = c;
+        bPrev = b;
+        a = aNext;
+        c = cNext;
+        b = bNext;
+      }
+    }
+  }
+
+  @Override
+  public void finishGeneration()
+  {
+    generation++;
+    current = (int) (generation & 1);
+    writeHeader();
+  }
+
+  @Override
+  public void store(Board board)
+  {
+    int elapsed = (int) Math.min(Rule.MAX_AGE, generation - storedGeneration);
+    storedGeneration = generation;
+    LongBuffer cells = planes[current];
+    for (int row = 0; row < size; row++)
+    {
+      byte[] ages = board.board[row];
+      for (int w = 0; w < words; w++)
+      {
+        long word = cells.get(row * words + w);
+        int end = Math.min(size, (w + 1) * 64);
+        for (int col = w * 64; col < end; col++)
+        {
+          if ((word & (1L << col)) == 0) ages[col] = 0;
+          else if (ages[col] == 0) ages[col] = 1;
+          else ages[col] = (byte) Math.min(Rule.MAX_AGE, ages[col] + elapsed);
+        }
+      }
+    }
+  }
+
+  @Override
+  public void setCell(int row, int col, boolean alive)
+  {
+    LongBuffer cells = planes[current];
+    int index = row * words + (col >>> 6);
+    if (alive) cells.put(index, cells.get(index) | 1L << col);
+    else cells.put(index, cells.get(index) & ~(1L << col));
+  }
+
+  @Override
+  public long getGeneration()
+  {
+    return generation;
+  }
+
+  @Override
+  public long getPopulation()
+  {
+    LongBuffer cells = planes[current];
+    long population = 0;
+    for (int i = 0; i < cells.limit(); i++) population += Long.bitCount(cells.get(i));
+    return population;
+  }
+
+  /**
+   * flushes the mapped planes and header to disk, if backed by a file.
+   */
+  void force()
+  {
+    if (header == null) return;
+    for (MappedByteBuffer plane : mapped) plane.force();
+    header.force();
+  }
+
+  /**
+   * @return what makes the open file not a map of a size x size board,
+   * null if it is one.
+   */
+  private String checkFile(int size, long length) throws IOException
+  {
+    if (file.length() < HEADER_BYTES) return "is too short to be a board map";
+    file.seek(0);
+    if (file.readLong() != MAGIC) return "is not a board map, or one of an older format";
+    int fileSize = file.readInt();
+    if (fileSize != size) return "holds a " + fileSize + " x " + fileSize + " board, not " + size + " x " + size;
+    if (file.length() != length) return "is " + file.length() + " bytes, a " + size + " board map is " + length;
+    return null;
+  }
+
+  /**
+   * flushes and closes the mapped file, if any.
+   * @throws IOException if the file can't be closed.
+   */
+  void close() throws IOException
+  {
+    if (file == null) return;
+    force();
+    file.close();
+  }
+
+  private void writeHeader()
+  {
+    if (header == null) return;
+    header.putLong(GENERATION_OFFSET, generation);
+  }
+}
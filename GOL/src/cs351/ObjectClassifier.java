@@ -0,0 +1,266 @@
+package cs351;
+
+/*
+ * Identifies a single object, e.g. one left over from a soup, by running
+ * it on its own until its shape comes back. Same place means a still
+ * life or an oscillator, moved means a spaceship. Objects are keyed by a
+ * canonical shape, the smallest over all phases, rotations and
+ * reflections, so every orientation of a glider is the same glider.
+ * Results are cached by shape, each new shape is only simulated once.
+ */
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+
+class ObjectClassifier
+{
+  static final int MAX_PERIOD = 128;      // longer periods are left unidentified
+
+  enum Kind
+  {
+    STILL_LIFE("still life"),
+    OSCILLATOR("oscillator"),
+    SPACESHIP("spaceship"),
+    UNIDENTIFIED("unidentified");
+
+    private final String label;
+
+    Kind(String label)
+    {
+      this.label = label;
+    }
+
+    @Override
+    public String toString()
+    {
+      return label;
+    }
+  }
+
+  /**
+   * what an object turned out to be.
+   */
+  static class Result
+  {
+    final String key;                     // canonical shape, "unidentified" if not periodic
+    final Kind kind;
+    final int period;
+    final int cells;                      // live cells in the phase keyed
+
+    Result(String key, Kind kind, int period, int cells)
+    {
+      this.key = key;
+      this.kind = kind;
+      this.period = period;
+      this.cells = cells;
+    }
+  }
+
+  private static final Result UNIDENTIFIED = new Result("unidentified", Kind.UNIDENTIFIED, 0, 0);
+
+  private final Rule rule;
+  private final ConcurrentHashMap<String, Result> results = new ConcurrentHashMap<>();
+  private final HashMap<String, String> names = new HashMap<>();   // canonical key to common name
+
+  /**
+   * @param rule two state rule the objects live under.
+   */
+  ObjectClassifier(Rule rule)
+  {
+    this.rule = rule;
+    if (!rule.isLife()) return;
+    name("block", "oo/oo");
+    name("beehive", ".oo./o..o/.oo.");
+    name("loaf", ".oo./o..o/.o.o/..o.");
+    name("boat", "oo./o.o/.o.");
+    name("ship", "oo./o.o/.oo");
+    name("tub", ".o./o.o/.o.");
+    name("pond", ".oo./o..o/o..o/.oo.");
+    name("long boat", "oo../o.o./.o.o/..o.");
+    name("barge", ".o../o.o./.o.o/..o.");
+    name("mango", ".oo../o..o./.o..o/..oo.");
+    name("eater 1", "oo../o.o./..o./..oo");
+    name("aircraft carrier", "oo../o..o/..oo");
+    name("blinker", "ooo");
+    name("toad", ".ooo/ooo.");
+    name("beacon", "oo../oo../..oo/..oo");
+    name("pentadecathlon", "..o....o../oo.oooo.oo/..o....o..");
+    name("glider", ".o./..o/ooo");
+    name("lightweight spaceship", ".o..o/o..../o...o/oooo.");
+  }
+
+  private void name(String name, String picture)
+  {
+    List<int[]> cells = new ArrayList<>();
+    String[] rows = picture.split("/");
+    for (int row = 0; row < rows.length; row++)
+    {
+      for (int col = 0; col < rows[row].length(); col++)
+      {
+        if (rows[row].charAt(col) == 'o') cells.add(new int[] {row, col});
+      }
+    }
+    names.put(classify(cells).key, name);
+  }
+
+  /**
+   * @param result a result of classify.
+   * @return the object's common name, or a description if it has none.
+   */
+  String nameOf(Result result)
+  {
+    String name = names.get(result.key);
+    if (name != null) return name;
+    if (result.kind == Kind.UNIDENTIFIED) return result.kind.toString();
+    String period = result.kind == Kind.STILL_LIFE ? "" : " p" + result.period;
+    return result.kind + period + " " + result.cells + " cells [" + result.key + "]";
+  }
+
+  /**
+   * @param cells live cells of the object, {row, col} anywhere on the plane.
+   * @return what the object is.
+   */
+  Result classify(List<int[]> cells)
+  {
+    if (cells.isEmpty()) return UNIDENTIFIED;
+    return results.computeIfAbsent(shape(cells, 0), shape -> simulate(cells));
+  }
+
+  /**
+   * runs the object alone on a board with room to move MAX_PERIOD / 2
+   * cells, as fast as a Life spaceship goes, until its shape repeats.
+   */
+  private Result simulate(List<int[]> cells)
+  {
+    int minRow = Integer.MAX_VALUE, minCol = Integer.MAX_VALUE, maxRow = Integer.MIN_VALUE,
+            maxCol = Integer.MIN_VALUE;
+    for (int[] cell : cells)
+    {
+      minRow = Math.min(minRow, cell[0]);
+      minCol = Math.min(minCol, cell[1]);
+      maxRow = Math.max(maxRow, cell[0]);
+      maxCol = Math.max(maxCol, cell[1]);
+    }
+    int margin = MAX_PERIOD / 2 + 2 * rule.getRadius();
+    int size = Math.max(maxRow - minRow, maxCol - minCol) + 1 + 2 * margin;
+    Board start = new Board(size);
+    for (int[] cell : cells) start.board[cell[0] - minRow + margin][cell[1] - minCol + margin] = 1;
+    ClassicEngine engine = new ClassicEngine(size, rule);
+    engine.load(start);
+
+    List<List<int[]>> phases = new ArrayList<>();
+    phases.add(live(engine.getCells()));
+    String first = shape(phases.get(0), 0);
+    int[] firstCorner = corner(phases.get(0));
+    for (int generation = 1; generation <= MAX_PERIOD; generation++)
+    {
+      engine.step();
+      List<int[]> phase = live(engine.getCells());
+      if (phase.isEmpty() || touchesEdge(phase, size)) return UNIDENTIFIED;
+      if (shape(phase, 0).equals(first))
+      {
+        int[] corner = corner(phase);
+        boolean moved = corner[0] != firstCorner[0] || corner[1] != firstCorner[1];
+        Kind kind = moved ? Kind.SPACESHIP : generation == 1 ? Kind.STILL_LIFE : Kind.OSCILLATOR;
+        return canonical(phases, kind, generation);
+      }
+      phases.add(phase);
+    }
+    return UNIDENTIFIED;
+  }
+
+  private Result canonical(List<List<int[]>> phases, Kind kind, int period)
+  {
+    String key = null;
+    int cells = 0;
+    for (List<int[]> phase : phases)
+    {
+      for (int symmetry = 0; symmetry < 8; symmetry++)
+      {
+        String shape = shape(phase, symmetry);
+        if (key == null || shape.compareTo(key) < 0)
+        {
+          key = shape;
+          cells = phase.size();
+        }
+      }
+    }
+    return new Result(key, kind, period, cells);
+  }
+
+  private boolean touchesEdge(List<int[]> cells, int size)
+  {
+    int reach = 2 * rule.getRadius();
+    for (int[] cell : cells)
+    {
+      if (Math.min(cell[0], cell[1]) < reach || Math.max(cell[0], cell[1]) >= size - reach) return true;
+    }
+    return false;
+  }
+
+  private static List<int[]> live(byte[][] board)
+  {
+    List<int[]> cells = new ArrayList<>();
+    for (int row = 0; row < board.length; row++)
+    {
+      for (int col = 0; col < board[row].length; col++)
+      {
+        if (board[row][col] > 0) cells.add(new int[] {row, col});
+      }
+    }
+    return cells;
+  }
+
+  private static int[] corner(List<int[]> cells)
+  {
+    int[] corner = {Integer.MAX_VALUE, Integer.MAX_VALUE};
+    for (int[] cell : cells)
+    {
+      corner[0] = Math.min(corner[0], cell[0]);
+      corner[1] = Math.min(corner[1], cell[1]);
+    }
+    return corner;
+  }
+
+  /**
+   * the cells as a picture, rows of '.' and 'o' joined by '/', after one of
+   * the eight rotations and reflections and moving to the origin.
+   */
+  private static String shape(List<int[]> cells, int symmetry)
+  {
+    int count = cells.size();
+    int[] rows = new int[count];
+    int[] cols = new int[count];
+    int minRow = Integer.MAX_VALUE, minCol = Integer.MAX_VALUE, maxRow = Integer.MIN_VALUE,
+            maxCol = Integer.MIN_VALUE;
+    for (int i = 0; i < count; i++)
+    {
+      int row = cells.get(i)[0];
+      int col = cells.get(i)[1];
+      if ((symmetry & 4) != 0)
+      {
+        int temp = row;
+        row = col;
+        col = temp;
+      }
+      if ((symmetry & 1) != 0) row = -row;
+      if ((symmetry & 2) != 0) col = -col;
+      rows[i] = row;
+      cols[i] = col;
+      minRow = Math.min(minRow, row);
+      minCol = Math.min(minCol, col);
+      maxRow = Math.max(maxRow, row);
+      maxCol = Math.max(maxCol, col);
+    }
+    int height = maxRow - minRow + 1;
+    int width = maxCol - minCol + 1;
+    char[] picture = new char[height * (width + 1) - 1];
+    Arrays.fill(picture, '.');
+    for (int row = 1; row < height; row++) picture[row * (width + 1) - 1] = '/';
+    for (int i = 0; i < count; i++) picture[(rows[i] - minRow) * (width + 1) + cols[i] - minCol] = 'o';
+    return new String(picture);
+  }
+}
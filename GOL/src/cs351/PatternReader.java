@@ -0,0 +1,210 @@
+package cs351;
+
+/*
+ * Reads pattern files into a Board or an engine. Handles RLE (.rle),
+ * Life 1.06 and plaintext (.cells). Files are parsed a character or a
+ * line at a time and cells are written straight to the target, so even
+ * huge patterns never exist as a list of cells.
+ */
+
+import java.io.BufferedReader;
+import java.io.FileReader;
+import java.io.IOException;
+
+class PatternReader
+{
+  /**
+   * where parsed cells go. Only live cells are written.
+   */
+  interface CellWriter
+  {
+    void set(int row, int col);
+  }
+
+  /**
+   * reads a pattern file onto the board, top left corner at (row, col).
+   * Cells falling outside the board are dropped.
+   * @param path pattern file.
+   * @param board board to write to.
+   * @param row row offset of the pattern.
+   * @param col col offset of the pattern.
+   * @throws IOException if the file can't be read or parsed.
+   */
+  static void read(String path, Board board, int row, int col) throws IOException
+  {
+    read(path, (r, c) ->
+    {
+      if (r >= 0 && c >= 0 && r < board.getSize() && c < board.getSize()) board.board[r][c] = 1;
+    }, row, col);
+  }
+
+  /**
+   * reads a pattern file into an engine, which may hold cells the board can't.
+   * @param path pattern file.
+   * @param engine engine to write to.
+   * @param row row offset of the pattern.
+   * @param col col offset of the pattern.
+   * @throws IOException if the file can't be read or parsed.
+   */
+  static void read(String path, LifeEngine engine, int row, int col) throws IOException
+  {
+    read(path, (r, c) -> engine.setCell(r, c, true), row, col);
+  }
+
+  /**
+   * reads a pattern file, picking the format from its first line. The
+   * first line is read whole and handed to the format's reader, nothing is
+   * marked and reset, so lines of any length are fine.
+   * @param path pattern file.
+   * @param writer receives each live cell.
+   * @param row row offset of the pattern.
+   * @param col col offset of the pattern.
+   * @throws IOException if the file can't be read or parsed.
+   */
+  static void read(String path, CellWriter writer, int row, int col) throws IOException
+  {
+    try (BufferedReader reader = new BufferedReader(new FileReader(path)))
+    {
+      String first = reader.readLine();
+      if (first == null) return;
+      if (first.startsWith("#Life 1.06")) readLife106(reader, writer, row, col);
+      else if (path.endsWith(".rle") || first.startsWith("#") || first.startsWith("x"))
+      {
+        readRle(first, reader, writer, row, col);
+      }
+      else readPlaintext(first, reader, writer, row, col);
+    }
+  }
+
+  /**
+   * plaintext: '!' comment lines, 'O' or '*' alive, anything else dead.
+   * @param first first line of the file, already read.
+   */
+  private static void readPlaintext(String first, BufferedReader reader, CellWriter writer, int row,
+                                    int col) throws IOException
+  {
+    int r = row;
+    for (String line = first; line != null; line = reader.readLine())
+    {
+      if (line.startsWith("!")) continue;
+      for (int i = 0; i < line.length(); i++)
+      {
+        char c = line.charAt(i);
+        if (c == 'O' || c == '*') writer.set(r, col + i);
+      }
+      r++;
+    }
+  }
+
+  /**
+   * Life 1.06: a header line, already read, then one "x y" pair per live
+   * cell. Coordinates can be negative, they are relative to (row, col).
+   */
+  private static void readLife106(BufferedReader reader, CellWriter writer, int row, int col)
+          throws IOException
+  {
+    String line;
+    int lineNumber = 1;
+    while ((line = reader.readLine()) != null)
+    {
+      lineNumber++;
+      line = line.trim();
+      if (line.isEmpty() || line.startsWith("#")) continue;
+      int space = line.indexOf(' ');
+      if (space < 0) throw new IOException("bad Life 1.06 cell on line " + lineNumber + ": " + line);
+      try
+      {
+        int x = Integer.parseInt(line.substring(0, space).trim());
+        int y = Integer.parseInt(line.substring(space + 1).trim());
+        writer.set(row + y, col + x);
+      } catch (NumberFormatException e)
+      {
+        throw new IOException("bad Life 1.06 cell on line " + lineNumber + ": " + line);
+      }
+    }
+  }
+
+  /**
+   * RLE: '#' comment lines, an "x = m, y = n[, rule = ...]" header, then
+   * runs of &lt;count&gt;&lt;tag&gt; where b is dead, o (or any other letter) is alive,
+   * $ ends a row and ! ends the pattern. Header lines are read whole, the
+   * runs after their first line a character at a time.
+   * @param first first line of the file, already read.
+   */
+  private static void readRle(String first, BufferedReader reader, CellWriter writer, int row, int col)
+          throws IOException
+  {
+    // skip comments and the header line
+    String line = first;
+    while (line != null)
+    {
+      String trimmed = line.trim();
+      if (!trimmed.isEmpty() && !trimmed.startsWith("#") && !trimmed.startsWith("x")) break;
+      line = reader.readLine();
+    }
+    if (line == null) return;
+
+    // the first line of runs is already read, the rest is read a character at a time
+    RleRuns runs = new RleRuns(writer, row, col);
+    for (int i = 0; i < line.length(); i++)
+    {
+      if (!runs.add(line.charAt(i))) return;
+    }
+    runs.add('\n');                      // the line break readLine dropped
+    int ch;
+    while ((ch = reader.read()) != -1)
+    {
+      if (!runs.add(ch)) return;
+    }
+  }
+
+  /**
+   * RLE runs, fed one character at a time.
+   */
+  private static class RleRuns
+  {
+    private final CellWriter writer;
+    private final int col;
+    private int r;
+    private int c;
+    private int count;
+
+    RleRuns(CellWriter writer, int row, int col)
+    {
+      this.writer = writer;
+      this.col = col;
+      this.r = row;
+      this.c = col;
+    }
+
+    /**
+     * @param ch next character of the runs.
+     * @return false once the pattern has ended.
+     * @throws IOException on a character that isn't a count or a tag.
+     */
+    boolean add(int ch) throws IOException
+    {
+      if (ch >= '0' && ch <= '9')
+      {
+        count = count * 10 + (ch - '0');
+        return true;
+      }
+      int run = count == 0 ? 1 : count;
+      count = 0;
+      if (ch == '!') return false;
+      else if (ch == '$')
+      {
+        r += run;
+        c = col;
+      }
+      else if (ch == 'b' || ch == '.') c += run;
+      else if (Character.isLetter(ch))
+      {
+        for (int i = 0; i < run; i++) writer.set(r, c + i);
+        c += run;
+      }
+      else if (!Character.isWhitespace(ch)) throw new IOException("bad RLE tag '" + (char) ch + "'");
+      return true;
+    }
+  }
+}
@@ -0,0 +1,68 @@
+package cs351;
+
+/*
+ * Immutable quadtree node used by HashLifeEngine. Nodes are hash consed,
+ * so two nodes with the same children are always the same object and
+ * children can be compared by reference.
+ */
+
+final class QuadNode
+{
+  final QuadNode nw;
+  final QuadNode ne;
+  final QuadNode sw;
+  final QuadNode se;
+  final int level;                        // node covers 2^level x 2^level cells
+  final long population;
+  private final int hash;
+
+  QuadNode result;                        // memoized successor 2^(level-2) generations on, see HashLifeEngine
+  QuadNode slowResult;                    // memoized successor fewer generations on
+  int slowExponent = -1;                  // generations (2^n) slowResult was advanced
+
+  /**
+   * leaf constructor, a single cell.
+   * @param alive state of the cell.
+   */
+  QuadNode(boolean alive)
+  {
+    this.nw = this.ne = this.sw = this.se = null;
+    this.level = 0;
+    this.population = alive ? 1 : 0;
+    this.hash = alive ? 1 : 0;
+  }
+
+  QuadNode(QuadNode nw, QuadNode ne, QuadNode sw, QuadNode se)
+  {
+    this.nw = nw;
+    this.ne = ne;
+    this.sw = sw;
+    this.se = se;
+    this.level = nw.level + 1;
+    this.population = nw.population + ne.population + sw.population + se.population;
+    int h = System.identityHashCode(nw);
+    h = h * 31 + System.identityHashCode(ne);
+    h = h * 31 + System.identityHashCode(sw);
+    h = h * 31 + System.identityHashCode(se);
+    this.hash = h;
+  }
+
+  @Override
+  public int hashCode()
+  {
+    return hash;
+  }
+
+  /**
+   * children are canonical, so reference comparison is enough.
+   */
+  @Override
+  public boolean equals(Object o)
+  {
+    if (this == o) return true;
+    if (!(o instanceof QuadNode)) return false;
+    QuadNode other = (QuadNode) o;
+    return level == other.level && level > 0 && nw == other.nw && ne == other.ne
+            && sw == other.sw && se == other.se;
+  }
+}
@@ -0,0 +1,356 @@
+package cs351;
+
+/*
+ * Cellular automaton rule, parsed from a rulestring and compiled to a
+ * transition table. Kernels count neighbors and look the next cell up in
+ * the table, so the rule costs no branching per cell.
+ *
+ * Rulestrings:
+ *   B3/S23, S23/B3, 23/3     outer totalistic, two states
+ *   B2/S/C3, /2/3            Generations, Cn states where dying cells
+ *                            count as dead and fade out over n - 2 generations
+ *   R5,C0,M1,S34..58,B34..45,NM
+ *                            Larger than Life: radius, states, M1 counts the
+ *                            cell itself, NM Moore or NN von Neumann
+ *
+ * Cells are stored as bytes: 0 dead, 1-11 alive with age, capped at 11,
+ * and -1 to -(states - 2) for the dying states of Generations rules.
+ */
+
+import java.util.Locale;
+
+class Rule
+{
+  static final Rule LIFE = parse("B3/S23");
+  static final int MAX_AGE = 11;
+  static final int MAX_RADIUS = TileTracker.TILE_SIZE;
+
+  private final String name;
+  private final int radius;
+  private final boolean vonNeumann;
+  private final boolean includeCenter;
+  private final int states;
+  private final boolean[] birth;          // by neighbor count
+  private final boolean[] survive;
+  private final int span;                 // neighbor counts 0 to span - 1
+  private final byte[] table;             // next cell by (cell & 0xFF) * span + count
+  private byte[] leafResults;
+
+  private Rule(String name, int radius, boolean vonNeumann, boolean includeCenter, int states,
+               boolean[] birth, boolean[] survive)
+  {
+    this.name = name;
+    this.radius = radius;
+    this.vonNeumann = vonNeumann;
+    this.includeCenter = includeCenter;
+    this.states = states;
+    this.birth = birth;
+    this.survive = survive;
+    this.span = birth.length;
+    this.table = new byte[256 * span];
+    for (int cell = Byte.MIN_VALUE; cell <= Byte.MAX_VALUE; cell++)
+    {
+      for (int count = 0; count < span; count++)
+      {
+        table[(cell & 0xFF) * span + count] = next(cell, count);
+      }
+    }
+  }
+
+  /**
+   * parses a rulestring, see the class comment for the forms understood.
+   * @param rule rulestring, case and spaces don't matter.
+   * @return the compiled rule.
+   * @throws IllegalArgumentException if the rulestring can't be parsed.
+   */
+  static Rule parse(String rule)
+  {
+    String text = rule.replace(" ", "").toUpperCase(Locale.ROOT);
+    try
+    {
+      if (text.startsWith("R")) return parseLargerThanLife(text);
+      return parseBirthSurvival(text);
+    } catch (NumberFormatException e)
+    {
+      throw new IllegalArgumentException("bad rule " + rule);
+    }
+  }
+
+  /**
+   * B/S and S/B forms, with an optional third Cn or Gn (or bare n) part
+   * for Generations.
+   */
+  private static Rule parseBirthSurvival(String text)
+  {
+    String[] parts = text.split("/", -1);
+    if (parts.length < 2 || parts.length > 3) throw new IllegalArgumentException("bad rule " + text);
+    String births = null;
+    String survivals = null;
+    int states = 2;
+    boolean numeric = !parts[0].startsWith("B") && !parts[0].startsWith("S");
+    for (int i = 0; i < parts.length; i++)
+    {
+      String part = parts[i];
+      if (part.startsWith("B")) births = part.substring(1);
+      else if (part.startsWith("S")) survivals = part.substring(1);
+      else if (part.startsWith("C") || part.startsWith("G")) states = Integer.parseInt(part.substring(1));
+      else if (numeric && i == 0) survivals = part;
+      else if (numeric && i == 1) births = part;
+      else if (i == 2) states = Integer.parseInt(part);
+      else throw new IllegalArgumentException("bad rule " + text);
+    }
+    if (births == null || survivals == null) throw new IllegalArgumentException("bad rule " + text);
+
+    boolean[] birth = digits(births, text);
+    boolean[] survive = digits(survivals, text);
+    String name = "B" + births + "/S" + survivals + (states > 2 ? "/C" + states : "");
+    return create(name, 1, false, false, states, birth, survive);
+  }
+
+  private static boolean[] digits(String counts, String text)
+  {
+    boolean[] result = new boolean[9];
+    for (int i = 0; i < counts.length(); i++)
+    {
+      int count = counts.charAt(i) - '0';
+      if (count < 0 || count > 8) throw new IllegalArgumentException("bad rule " + text);
+      result[count] = true;
+    }
+    return result;
+  }
+
+  /**
+   * R, C, M, S, B and N fields, comma separated, in any order.
+   */
+  private static Rule parseLargerThanLife(String text)
+  {
+    int radius = 1;
+    int states = 2;
+    boolean includeCenter = false;
+    boolean vonNeumann = false;
+    String births = null;
+    String survivals = null;
+    for (String field : text.split(","))
+    {
+      if (field.isEmpty()) continue;
+      String value = field.substring(1);
+      switch (field.charAt(0))
+      {
+        case 'R': radius = Integer.parseInt(value); break;
+        case 'C': states = Math.max(2, Integer.parseInt(value)); break;
+        case 'M': includeCenter = Integer.parseInt(value) != 0; break;
+        case 'S': survivals = value; break;
+        case 'B': births = value; break;
+        case 'N':
+          if (value.equals("N")) vonNeumann = true;
+          else if (!value.equals("M")) throw new IllegalArgumentException("unknown neighborhood " + field);
+          break;
+        default: throw new IllegalArgumentException("bad rule field " + field);
+      }
+    }
+    if (radius < 1 || radius > MAX_RADIUS)
+    {
+      throw new IllegalArgumentException("radius must be 1 to " + MAX_RADIUS);
+    }
+    if (births == null || survivals == null) throw new IllegalArgumentException("bad rule " + text);
+
+    int cells = vonNeumann ? 2 * radius * (radius + 1) + 1 : (2 * radius + 1) * (2 * radius + 1);
+    int span = includeCenter ? cells + 1 : cells;
+    boolean[] birth = ranges(births, span);
+    boolean[] survive = ranges(survivals, span);
+    return create(text, radius, vonNeumann, includeCenter, states, birth, survive);
+  }
+
+  /**
+   * "34..58" style ranges, several may be joined with "+", or a single count.
+   */
+  private static boolean[] ranges(String counts, int span)
+  {
+    boolean[] result = new boolean[span];
+    if (counts.isEmpty()) return result;
+    for (String range : counts.split("\\+"))
+    {
+      int dots = range.indexOf("..");
+      int low = Integer.parseInt(dots < 0 ? range : range.substring(0, dots));
+      int high = dots < 0 ? low : Integer.parseInt(range.substring(dots + 2));
+      for (int count = Math.max(0, low); count <= Math.min(span - 1, high); count++) result[count] = true;
+    }
+    return result;
+  }
+
+  private static Rule create(String name, int radius, boolean vonNeumann, boolean includeCenter,
+                             int states, boolean[] birth, boolean[] survive)
+  {
+    if (states > 2 - Byte.MIN_VALUE) throw new IllegalArgumentException("too many states");
+    return new Rule(name, radius, vonNeumann, includeCenter, states, birth, survive);
+  }
+
+  /**
+   * the transition, only used to fill the table.
+   */
+  private byte next(int cell, int count)
+  {
+    if (cell == 0) return birth[count] ? (byte) 1 : 0;
+    if (cell > 0)
+    {
+      if (survive[count]) return (byte) Math.min(cell + 1, MAX_AGE);
+      return states > 2 ? (byte) -1 : 0;
+    }
+    // dying state -cell + 1 moves on to the next, the last one dies
+    return -cell + 2 < states ? (byte) (cell - 1) : 0;
+  }
+
+  /**
+   * @return transition table, next cell at (cell &amp; 0xFF) * getSpan() + count.
+   */
+  byte[] getTable()
+  {
+    return table;
+  }
+
+  /**
+   * @return number of possible neighbor counts, 0 to getSpan() - 1.
+   */
+  int getSpan()
+  {
+    return span;
+  }
+
+  int getRadius()
+  {
+    return radius;
+  }
+
+  int getStates()
+  {
+    return states;
+  }
+
+  /**
+   * @return true for two state rules over the eight nearest neighbors,
+   * the rules the bitboard and HashLife engines can run.
+   */
+  boolean isOuterTotalistic()
+  {
+    return radius == 1 && !vonNeumann && !includeCenter && states == 2;
+  }
+
+  /**
+   * @return true for B3/S23 however it was written.
+   */
+  boolean isLife()
+  {
+    return isOuterTotalistic() && getBirthMask() == 1 << 3 && getSurviveMask() == (1 << 2 | 1 << 3);
+  }
+
+  /**
+   * @return true if dead cells with no live neighbors are born, so empty
+   * space doesn't stay empty and can't be skipped.
+   */
+  boolean birthsFromNothing()
+  {
+    return birth[0];
+  }
+
+  /**
+   * @return bit n set if n neighbors give birth.
+   */
+  int getBirthMask()
+  {
+    return mask(birth);
+  }
+
+  /**
+   * @return bit n set if n neighbors survive.
+   */
+  int getSurviveMask()
+  {
+    return mask(survive);
+  }
+
+  private static int mask(boolean[] counts)
+  {
+    int mask = 0;
+    for (int count = 0; count < Math.min(counts.length, 32); count++) if (counts[count]) mask |= 1 << count;
+    return mask;
+  }
+
+  /**
+   * counts live cells in the neighborhood of (row, col).
+   * @param board cells, indexed [row][col].
+   * @param row index
+   * @param col index
+   * @param wrap true if the board is a torus, otherwise cells past the
+   *             edge are dead.
+   * @return neighbor count, the cell itself included if the rule says so.
+   */
+  int countNeighbors(byte[][] board, int row, int col, boolean wrap)
+  {
+    int rows = board.length;
+    int count = 0;
+    int firstRow = wrap ? row - radius : Math.max(0, row - radius);
+    int lastRow = wrap ? row + radius : Math.min(rows - 1, row + radius);
+    for (int i = firstRow; i <= lastRow; i++)
+    {
+      byte[] cells = board[wrap ? Math.floorMod(i, rows) : i];
+      int reach = vonNeumann ? radius - Math.abs(i - row) : radius;
+      if (wrap)
+      {
+        for (int j = col - reach; j <= col + reach; j++)
+        {
+          if (cells[Math.floorMod(j, cells.length)] > 0) count++;
+        }
+        continue;
+      }
+      int firstCol = Math.max(0, col - reach);
+      int lastCol = Math.min(cells.length - 1, col + reach);
+      for (int j = firstCol; j <= lastCol; j++)
+      {
+        if (cells[j] > 0) count++;
+      }
+    }
+    if (!includeCenter && board[row][col] > 0) count--;
+    return count;
+  }
+
+  /**
+   * 4x4 block to centre 2x2 table for HashLife, bit (row*4 + col) in,
+   * bit (row*2 + col) of the centre out. Only for outer totalistic rules.
+   * @return the table, built the first time it's asked for.
+   */
+  synchronized byte[] getLeafResults()
+  {
+    if (leafResults != null) return leafResults;
+    leafResults = new byte[1 << 16];
+    for (int bits = 0; bits < leafResults.length; bits++)
+    {
+      int result = 0;
+      int bit = 0;
+      for (int row = 1; row <= 2; row++)
+      {
+        for (int col = 1; col <= 2; col++)
+        {
+          int count = 0;
+          for (int i = row - 1; i <= row + 1; i++)
+          {
+            for (int j = col - 1; j <= col + 1; j++)
+            {
+              if ((i != row || j != col) && (bits >> (i * 4 + j) & 1) != 0) count++;
+            }
+          }
+          boolean wasAlive = (bits >> (row * 4 + col) & 1) != 0;
+          if (wasAlive ? survive[count] : birth[count]) result |= 1 << bit;
+          bit++;
+        }
+      }
+      leafResults[bits] = (byte) result;
+    }
+    return leafResults;
+  }
+
+  @Override
+  public String toString()
+  {
+    return name;
+  }
+}
@@ -0,0 +1,165 @@
+package cs351;
+
+/*
+ * Compressed binary snapshots of a Board, ages included. The board is
+ * written in row order as runs of (age byte, run length as a varint),
+ * so mostly dead or mostly uniform boards shrink to a few bytes per run
+ * and save/restore is one sequential pass over the cells.
+ *
+ * Format: "GOLS" magic, int version, int size, long generation, runs.
+ */
+
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.Arrays;
+
+class Snapshot
+{
+  private static final int MAGIC = 0x474f4c53;    // "GOLS"
+  private static final int VERSION = 1;
+  private static final int BUFFER_SIZE = 1 << 16;
+
+  /**
+   * writes the board to a snapshot file.
+   * @param path file to write.
+   * @param board board to save.
+   * @param generation generation the board is at, stored for resuming runs.
+   * @throws IOException if the file can't be written.
+   */
+  static void write(String path, Board board, long generation) throws IOException
+  {
+    try (OutputStream file = new FileOutputStream(path))
+    {
+      DataOutputStream header = new DataOutputStream(file);
+      header.writeInt(MAGIC);
+      header.writeInt(VERSION);
+      header.writeInt(board.getSize());
+      header.writeLong(generation);
+
+      // runs go through a plain array, stream calls per byte dominate otherwise
+      byte[] buffer = new byte[BUFFER_SIZE];
+      int used = 0;
+      byte value = board.board[0][0];
+      long run = 0;
+      for (byte[] row : board.board)
+      {
+        for (byte cell : row)
+        {
+          if (cell == value)
+          {
+            run++;
+            continue;
+          }
+          if (used > BUFFER_SIZE - 11)
+          {
+            file.write(buffer, 0, used);
+            used = 0;
+          }
+          used = writeRun(buffer, used, value, run);
+          value = cell;
+          run = 1;
+        }
+      }
+      used = writeRun(buffer, used, value, run);
+      file.write(buffer, 0, used);
+    }
+  }
+
+  /**
+   * reads a snapshot file into a new board of the snapshot's size.
+   * @param path file to read.
+   * @return the board.
+   * @throws IOException if the file can't be read or isn't a snapshot.
+   */
+  static Board read(String path) throws IOException
+  {
+    try (DataInputStream in = new DataInputStream(
+            new BufferedInputStream(new FileInputStream(path), BUFFER_SIZE)))
+    {
+      if (in.readInt() != MAGIC) throw new IOException(path + " is not a board snapshot");
+      int version = in.readInt();
+      if (version != VERSION) throw new IOException("unsupported snapshot version " + version);
+      int size = in.readInt();
+      in.readLong();                          // generation, see readGeneration
+
+      Board board = new Board(size);
+      int row = 0;
+      int col = 0;
+      long remaining = (long) size * size;
+      while (remaining > 0)
+      {
+        byte value = in.readByte();
+        long run = readVarLong(in);
+        if (run > remaining) throw new IOException("snapshot runs overflow the board");
+        remaining -= run;
+        while (run > 0)
+        {
+          int n = (int) Math.min(run, size - col);
+          Arrays.fill(board.board[row], col, col + n, value);
+          run -= n;
+          col += n;
+          if (col == size)
+          {
+            col = 0;
+            row++;
+          }
+        }
+      }
+      return board;
+    }
+  }
+
+  /**
+   * @param path snapshot file.
+   * @return generation stored in the snapshot header.
+   * @throws IOException if the file can't be read or isn't a snapshot.
+   */
+  static long readGeneration(String path) throws IOException
+  {
+    try (DataInputStream in = new DataInputStream(new FileInputStream(path)))
+    {
+      if (in.readInt() != MAGIC) throw new IOException(path + " is not a board snapshot");
+      in.readInt();
+      in.readInt();
+      return in.readLong();
+    }
+  }
+
+  /**
+   * writes one run at buffer[used], at most 11 bytes.
+   * @return new used length of the buffer.
+   */
+  private static int writeRun(byte[] buffer, int used, byte value, long run)
+  {
+    buffer[used++] = value;
+    while ((run & ~0x7FL) != 0)
+    {
+      buffer[used++] = (byte) ((run & 0x7F) | 0x80);
+      run >>>= 7;
+    }
+    buffer[used++] = (byte) run;
+    return used;
+  }
+
+  private static long readVarLong(InputStream in) throws IOException
+  {
+    long value = 0;
+    int shift = 0;
+    int b;
+    do
+    {
+      b = in.read();
+      if (b < 0) throw new EOFException("truncated snapshot");
+      value |= (long) (b & 0x7F) << shift;
+      shift += 7;
+    } while ((b & 0x80) != 0);
+    return value;
+  }
+}
@@ -0,0 +1,83 @@
+package cs351;
+
+/*
+ * A pattern file held in memory so it can be stamped onto the board any
+ * number of times, e.g. wherever the user clicks. The live cells are kept
+ * as row, col pairs relative to the pattern's top left corner.
+ */
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Arrays;
+
+class Stamp
+{
+  private final String name;
+  private final int[] cells;              // row, col pairs
+  private final int count;
+
+  private Stamp(String name, int[] cells, int count)
+  {
+    this.name = name;
+    this.cells = cells;
+    this.count = count;
+  }
+
+  /**
+   * reads a pattern file, any format PatternReader understands.
+   * @param path pattern file.
+   * @return the pattern, moved so its top left live cell bounds are at 0, 0.
+   * @throws IOException if the file can't be read or parsed.
+   */
+  static Stamp read(String path) throws IOException
+  {
+    int[][] cells = {new int[64]};
+    int[] count = {0};
+    PatternReader.read(path, (row, col) ->
+    {
+      if (2 * count[0] == cells[0].length) cells[0] = Arrays.copyOf(cells[0], 2 * cells[0].length);
+      cells[0][2 * count[0]] = row;
+      cells[0][2 * count[0] + 1] = col;
+      count[0]++;
+    }, 0, 0);
+    int minRow = Integer.MAX_VALUE;
+    int minCol = Integer.MAX_VALUE;
+    for (int i = 0; i < count[0]; i++)
+    {
+      minRow = Math.min(minRow, cells[0][2 * i]);
+      minCol = Math.min(minCol, cells[0][2 * i + 1]);
+    }
+    for (int i = 0; i < count[0]; i++)
+    {
+      cells[0][2 * i] -= minRow;
+      cells[0][2 * i + 1] -= minCol;
+    }
+    return new Stamp(new File(path).getName(), cells[0], count[0]);
+  }
+
+  /**
+   * @return number of live cells.
+   */
+  int size()
+  {
+    return count;
+  }
+
+  int getRow(int cell)
+  {
+    return cells[2 * cell];
+  }
+
+  int getCol(int cell)
+  {
+    return cells[2 * cell + 1];
+  }
+
+  /**
+   * @return file name the pattern was read from.
+   */
+  String getName()
+  {
+    return name;
+  }
+}
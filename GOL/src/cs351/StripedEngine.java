@@ -0,0 +1,28 @@
+package cs351;
+
+/*
+ * Engine whose generation can be split into row stripes, so it can be
+ * stepped by Life's BoardThreads the same way the byte boards are.
+ */
+
+interface StripedEngine extends LifeEngine
+{
+  /**
+   * @return number of rows, stripes are taken from [0, getRows()).
+   */
+  int getRows();
+
+  /**
+   * computes the next generation for rows [startRow, endRow). Safe to call
+   * from several threads at once for disjoint stripes.
+   * @param startRow first row, inclusive.
+   * @param endRow last row, exclusive.
+   */
+  void stepRows(int startRow, int endRow);
+
+  /**
+   * makes the generation computed by stepRows current. Called once all
+   * stripes are done, e.g. from the barrier action.
+   */
+  void finishGeneration();
+}
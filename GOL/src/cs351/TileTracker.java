@@ -0,0 +1,176 @@
+package cs351;
+
+/*
+ * Tracks which 32x32 tiles of the board changed in the last generation.
+ * A tile only needs stepping if it or one of its eight neighbors changed,
+ * and only changed tiles need repainting, so generation and repaint cost
+ * follow the activity on the board rather than its area.
+ */
+
+import java.util.Arrays;
+
+class TileTracker
+{
+  static final int TILE_SIZE = 32;
+  private final int tiles;                // tiles per side
+  private boolean[] active;               // tiles to step this generation
+  private boolean[] changed;              // tiles changed by the generation being stepped
+  private boolean[] dirty;                // tiles changed by the last finished generation
+  private boolean wrap;                   // torus, edge tiles neighbor the opposite edge
+  private final int[] activeSums;         // active tiles in [0, row) x [0, col), by row * (tiles + 1) + col
+  private boolean sumsStale = true;
+
+  TileTracker(int size)
+  {
+    this.tiles = (size + TILE_SIZE - 1) / TILE_SIZE;
+    this.active = new boolean[tiles * tiles];
+    this.changed = new boolean[tiles * tiles];
+    this.dirty = new boolean[tiles * tiles];
+    this.activeSums = new int[(tiles + 1) * (tiles + 1)];
+    markAll();
+  }
+
+  /**
+   * makes activity spread across the edges of the board, for the torus.
+   * @param wrap true if opposite edges are neighbors.
+   */
+  void setWrap(boolean wrap)
+  {
+    this.wrap = wrap;
+  }
+
+  /**
+   * @return number of tiles along each side of the board.
+   */
+  int getTiles()
+  {
+    return tiles;
+  }
+
+  /**
+   * @param tileRow tile row index
+   * @param tileCol tile col index
+   * @return true if the tile has to be stepped this generation.
+   */
+  boolean isActive(int tileRow, int tileCol)
+  {
+    return active[tileRow * tiles + tileCol];
+  }
+
+  /**
+   * counts the active tiles of a rectangle, so a stepper can skip a
+   * quiet part of the board without splitting it down to single tiles.
+   * The first call after the active tiles change rebuilds a summed area
+   * table, it must not race other calls. Later calls, until the next
+   * change, only read it and can come from any thread.
+   * @return active tiles in [startRow, endRow) x [startCol, endCol), in tiles.
+   */
+  int countActive(int startRow, int endRow, int startCol, int endCol)
+  {
+    if (sumsStale) sumActive();
+    int stride = tiles + 1;
+    return activeSums[endRow * stride + endCol] - activeSums[startRow * stride + endCol]
+            - activeSums[endRow * stride + startCol] + activeSums[startRow * stride + startCol];
+  }
+
+  private void sumActive()
+  {
+    int stride = tiles + 1;
+    for (int row = 0; row < tiles; row++)
+    {
+      int rowSum = 0;
+      for (int col = 0; col < tiles; col++)
+      {
+        if (active[row * tiles + col]) rowSum++;
+        activeSums[(row + 1) * stride + col + 1] = activeSums[row * stride + col + 1] + rowSum;
+      }
+    }
+    sumsStale = false;
+  }
+
+  /**
+   * @param tileRow tile row index
+   * @param tileCol tile col index
+   * @return true if the tile changed in the last finished generation.
+   */
+  boolean isDirty(int tileRow, int tileCol)
+  {
+    return dirty[tileRow * tiles + tileCol];
+  }
+
+  /**
+   * records that a cell changed in the generation being stepped. Threads
+   * only ever write true here, so stripes sharing a tile are harmless.
+   * @param row cell row
+   * @param col cell col
+   */
+  void markChanged(int row, int col)
+  {
+    changed[(row / TILE_SIZE) * tiles + col / TILE_SIZE] = true;
+  }
+
+  /**
+   * marks a single cell edit outside of stepping, e.g. toggled in the GUI.
+   * @param row cell row
+   * @param col cell col
+   */
+  void markCell(int row, int col)
+  {
+    markChanged(row, col);
+    activateAround(row / TILE_SIZE, col / TILE_SIZE);
+  }
+
+  /**
+   * makes every tile active and dirty, used when the whole board is replaced.
+   */
+  void markAll()
+  {
+    Arrays.fill(active, true);
+    Arrays.fill(dirty, true);
+    sumsStale = true;
+  }
+
+  /**
+   * called once all stripes are done. Tiles that changed become dirty, and
+   * they and their neighbors are the active tiles of the next generation.
+   */
+  void finishGeneration()
+  {
+    boolean[] temp = dirty;
+    dirty = changed;
+    changed = temp;
+    Arrays.fill(changed, false);
+    Arrays.fill(active, false);
+    sumsStale = true;
+    for (int tileRow = 0; tileRow < tiles; tileRow++)
+    {
+      for (int tileCol = 0; tileCol < tiles; tileCol++)
+      {
+        if (dirty[tileRow * tiles + tileCol]) activateAround(tileRow, tileCol);
+      }
+    }
+  }
+
+  private void activateAround(int tileRow, int tileCol)
+  {
+    sumsStale = true;
+    if (wrap)
+    {
+      for (int i = tileRow - 1; i <= tileRow + 1; i++)
+      {
+        for (int j = tileCol - 1; j <= tileCol + 1; j++)
+        {
+          active[Math.floorMod(i, tiles) * tiles + Math.floorMod(j, tiles)] = true;
+        }
+      }
+      return;
+    }
+    for (int i = Math.max(0, tileRow - 1); i <= Math.min(tiles - 1, tileRow + 1); i++)
+    {
+      for (int j = Math.max(0, tileCol - 1); j <= Math.min(tiles - 1, tileCol + 1); j++)
+      {
+        active[i * tiles + j] = true;
+      }
+    }
+  }
+}
@@ -0,0 +1,72 @@
+package cs351;
+
+/*
+ * Escaping ships are removed whole in every phase. Phases 0 and 2 of the
+ * lightweight spaceship are two 8-connected pieces, neither a ship alone.
+ */
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class CensusTest
+{
+  private static final int SIZE = 40;
+  private static final String LWSS = ".o..o/o..../o...o/oooo.";   // flying left
+
+  @Test
+  public void removesLightweightSpaceshipInEveryPhase()
+  {
+    Census census = new Census();
+    census.parseArgs(new String[0]);
+    for (int phase = 0; phase < 4; phase++)
+    {
+      ClassicEngine engine = new ClassicEngine(SIZE);
+      engine.load(atLeftEdge(phase));
+      boolean[][] live = new boolean[SIZE][SIZE];
+      boolean[][] visited = new boolean[SIZE][SIZE];
+      assertTrue("phase " + phase, census.removeEscapees(engine, SIZE, 2, live, visited, new Census.Tally()));
+      assertEquals("phase " + phase, 0, engine.getPopulation());
+    }
+  }
+
+  /**
+   * @return a board with an LWSS stepped phase generations, its leftmost
+   * cell in column 1, within reach of the edge.
+   */
+  private static Board atLeftEdge(int phase)
+  {
+    Board start = new Board(SIZE);
+    String[] rows = LWSS.split("/");
+    for (int row = 0; row < rows.length; row++)
+    {
+      for (int col = 0; col < rows[row].length(); col++)
+      {
+        if (rows[row].charAt(col) == 'o') start.board[SIZE / 2 + row][SIZE / 2 + col] = 1;
+      }
+    }
+    ClassicEngine engine = new ClassicEngine(SIZE);
+    engine.load(start);
+    for (int i = 0; i < phase; i++) engine.step();
+
+    List<int[]> cells = new ArrayList<>();
+    int minCol = SIZE;
+    byte[][] board = engine.getCells();
+    for (int row = 0; row < SIZE; row++)
+    {
+      for (int col = 0; col < SIZE; col++)
+      {
+        if (board[row][col] <= 0) continue;
+        cells.add(new int[] {row, col});
+        minCol = Math.min(minCol, col);
+      }
+    }
+    Board edge = new Board(SIZE);
+    for (int[] cell : cells) edge.board[cell[0]][cell[1] - minCol + 1] = 1;
+    return edge;
+  }
+}